@@ -0,0 +1,112 @@
+package socialMediaPlatform;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Runs SocialNetwork calls off the caller's thread and returns futures.
+// Queries share a worker pool. Updates go through a single writer thread, so
+// they are applied in the order they were submitted: a friendship requested
+// right after its user was created still finds the user. Futures complete on
+// the callback executor, which is Platform::runLater in the UI, so
+// dependents may touch controls directly.
+//
+// A query can name a channel; a newer query on the same channel cancels the
+// older one. A cancelled query that has not started is dropped, one that is
+// running is interrupted, and either way its result is never delivered.
+class AsyncNetworkService implements AutoCloseable {
+
+    private final SocialNetwork network;
+    private final Executor callbacks;
+    private final ExecutorService queries;
+    private final ExecutorService updates;
+    private final Map<Object, CompletableFuture<?>> latest = new ConcurrentHashMap<>();
+
+    AsyncNetworkService(SocialNetwork network, Executor callbacks) {
+        this(network, callbacks, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    AsyncNetworkService(SocialNetwork network, Executor callbacks, int queryThreads) {
+        this.network = network;
+        this.callbacks = callbacks;
+        this.queries = Executors.newFixedThreadPool(queryThreads, daemonThreads("network-query-"));
+        this.updates = Executors.newSingleThreadExecutor(daemonThreads("network-update-"));
+    }
+
+    // channel may be null for a query that nothing supersedes
+    <T> CompletableFuture<T> query(Object channel, Function<SocialNetwork, T> call) {
+        CompletableFuture<T> result = submit(queries, call, true);
+        if (channel != null) {
+            CompletableFuture<?> previous = latest.put(channel, result);
+            if (previous != null) {
+                previous.cancel(true);
+            }
+            result.whenComplete((value, error) -> latest.remove(channel, result));
+        }
+        return result;
+    }
+
+    // Updates are never superseded, and cancelling one only drops it if it has
+    // not started: an interrupt would close the mutation log's channel
+    CompletableFuture<Void> update(Consumer<SocialNetwork> change) {
+        return submit(updates, network -> {
+            change.accept(network);
+            return null;
+        }, false);
+    }
+
+    // Abandons pending queries, then waits for submitted updates to be applied
+    @Override
+    public void close() {
+        queries.shutdownNow();
+        updates.shutdown();
+        try {
+            if (!updates.awaitTermination(30, TimeUnit.SECONDS)) {
+                updates.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            updates.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(ExecutorService executor, Function<SocialNetwork, T> call, boolean interruptible) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                // Cancelled while it was queued
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    T value = call.apply(network);
+                    callbacks.execute(() -> result.complete(value));
+                } catch (RuntimeException | Error e) {
+                    callbacks.execute(() -> result.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(interruptible);
+            }
+        });
+        return result;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            // Must not keep the JVM alive after the window closes
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
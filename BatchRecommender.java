@@ -0,0 +1,139 @@
+package socialMediaPlatform;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Computes friend suggestions for many users at once. The id range is split
+// into fork-join tasks; each worker thread reuses FriendRecommender's
+// per-thread scratch arrays, so the scoring loop does not allocate, and every
+// result is handed to a sink as soon as it is ready instead of being collected.
+//
+// Run it on a pinned version (FriendGraph.pin) so all results describe
+// the same moment and the workers never contend with writers.
+final class BatchRecommender {
+
+    // Users per leaf task: large enough to amortize forking, small enough to balance hubs
+    private static final int LEAF_SIZE = 256;
+
+    // Receives results from several worker threads at once. The user comes as
+    // a username, so a run over a mapped snapshot does not build every user.
+    interface Sink {
+        void accept(String username, List<FriendSuggestion> suggestions);
+
+        // Called by a worker after each finished block of users
+        default void endBlock() {
+        }
+    }
+
+    private BatchRecommender() {
+    }
+
+    // Every user in the graph; returns how many were processed
+    static long suggestAll(FriendGraph graph, int limit, Sink sink, ForkJoinPool pool) {
+        return pool.invoke(new Block(graph, null, 0, graph.size(), limit, sink));
+    }
+
+    // Only the given user ids
+    static long suggest(FriendGraph graph, int[] userIds, int limit, Sink sink, ForkJoinPool pool) {
+        return pool.invoke(new Block(graph, userIds, 0, userIds.length, limit, sink));
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Block extends RecursiveTask<Long> {
+        private final FriendGraph graph;
+        private final int[] userIds;
+        private final int from;
+        private final int to;
+        private final int limit;
+        private final Sink sink;
+
+        Block(FriendGraph graph, int[] userIds, int from, int to, int limit, Sink sink) {
+            this.graph = graph;
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+            this.sink = sink;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                Block left = new Block(graph, userIds, from, middle, limit, sink);
+                left.fork();
+                long right = new Block(graph, userIds, middle, to, limit, sink).compute();
+                return right + left.join();
+            }
+            for (int i = from; i < to; i++) {
+                int id = userIds == null ? i : userIds[i];
+                sink.accept(graph.username(id), FriendRecommender.suggest(graph, id, limit));
+            }
+            sink.endBlock();
+            return (long) (to - from);
+        }
+    }
+
+    // Writes one line per user: username, then tab-separated username:mutual
+    // pairs, best first. Each worker formats a block into its own buffer and
+    // appends it to the file in one write.
+    static final class FileSink implements Sink, Closeable {
+        private static final int FLUSH_CHARS = 1 << 16;
+
+        private final Writer out;
+        private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(StringBuilder::new);
+        private IOException failure;
+
+        FileSink(Path file) throws IOException {
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void accept(String username, List<FriendSuggestion> suggestions) {
+            StringBuilder line = buffers.get();
+            line.append(username);
+            for (FriendSuggestion suggestion : suggestions) {
+                line.append('\t').append(suggestion.getUser().getUsername())
+                        .append(':').append(suggestion.getMutualFriends());
+            }
+            line.append('\n');
+            if (line.length() >= FLUSH_CHARS) {
+                endBlock();
+            }
+        }
+
+        @Override
+        public void endBlock() {
+            StringBuilder block = buffers.get();
+            if (block.length() == 0) {
+                return;
+            }
+            synchronized (this) {
+                if (failure == null) {
+                    try {
+                        out.append(block);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+            block.setLength(0);
+        }
+
+        // Reports the first write error, if any
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                out.close();
+            } finally {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        }
+    }
+}
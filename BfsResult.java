@@ -0,0 +1,111 @@
+package socialMediaPlatform;
+
+import java.util.*;
+
+// Outcome of a BreadthFirstSearch: hop distance and BFS-tree parent of every
+// user reached, plus the users in the order they were reached (level by level)
+final class BfsResult {
+
+    static final int UNREACHED = -1;
+
+    private final FriendGraph graph;
+    private final int source;
+    private final int[] distance;
+    private final int[] parent;
+    private final int[] order;
+    private final int reachedCount;
+    private final int depth;
+
+    BfsResult(FriendGraph graph, int source, int[] distance, int[] parent, int[] order, int reachedCount, int depth) {
+        this.graph = graph;
+        this.source = source;
+        this.distance = distance;
+        this.parent = parent;
+        this.order = order;
+        this.reachedCount = reachedCount;
+        this.depth = depth;
+    }
+
+    int source() {
+        return source;
+    }
+
+    // Number of users reached, the source included
+    public int reachedCount() {
+        return reachedCount;
+    }
+
+    // Distance of the farthest user reached
+    public int depth() {
+        return depth;
+    }
+
+    int distance(int id) {
+        return id < distance.length ? distance[id] : UNREACHED;
+    }
+
+    int parent(int id) {
+        return id < parent.length ? parent[id] : UNREACHED;
+    }
+
+    boolean reached(int id) {
+        return distance(id) != UNREACHED;
+    }
+
+    // Id at the given position of the visit order
+    int visited(int index) {
+        return order[index];
+    }
+
+    // Ids from the source to the target, or an empty array if it was not reached
+    int[] pathTo(int id) {
+        int hops = distance(id);
+        if (hops == UNREACHED) {
+            return new int[0];
+        }
+        int[] path = new int[hops + 1];
+        for (int i = hops; i >= 0; i--) {
+            path[i] = id;
+            id = parent[id];
+        }
+        return path;
+    }
+
+    public int distanceTo(UserDirectory user) {
+        return graph.contains(user) ? distance(user.id()) : UNREACHED;
+    }
+
+    public List<UserDirectory> pathTo(UserDirectory user) {
+        if (!graph.contains(user)) {
+            return List.of();
+        }
+        List<UserDirectory> path = new ArrayList<>();
+        for (int id : pathTo(user.id())) {
+            path.add(graph.user(id));
+        }
+        return path;
+    }
+
+    // Users exactly the given number of hops away, in visit order
+    public List<UserDirectory> usersAtDistance(int hops) {
+        List<UserDirectory> found = new ArrayList<>();
+        for (int i = 0; i < reachedCount; i++) {
+            int id = order[i];
+            if (distance[id] == hops) {
+                found.add(graph.user(id));
+            } else if (distance[id] > hops) {
+                break;
+            }
+        }
+        return found;
+    }
+
+    // All users reached, in visit order
+    public List<UserDirectory> visitOrder() {
+        List<UserDirectory> found = new ArrayList<>(reachedCount);
+        for (int i = 0; i < reachedCount; i++) {
+            found.add(graph.user(order[i]));
+        }
+        return found;
+    }
+}
@@ -0,0 +1,111 @@
+package socialMediaPlatform;
+
+import java.util.Arrays;
+
+// Level-by-level BFS over the friend graph, written for million-user graphs.
+// The queue is a single int[] in which each level is a contiguous slice, and
+// visited users are tracked in a bitset.
+//
+// Small frontiers are expanded top-down (each frontier user scans its
+// friends). Once the frontier touches a large share of the remaining edges,
+// the search switches to bottom-up (each unvisited user looks for any friend
+// in the frontier and stops at the first one), which skips most edges of the
+// few huge middle levels of a social graph (Beamer et al., direction-optimizing
+// BFS). It switches back once the frontier shrinks again.
+final class BreadthFirstSearch {
+
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // Go bottom-up when frontier edges exceed unexplored edges / ALPHA
+    static final int ALPHA = 14;
+    // Go back top-down when the frontier has fewer than users / BETA members
+    static final int BETA = 24;
+
+    private BreadthFirstSearch() {
+    }
+
+    // Explores at most maxDepth hops from source
+    static BfsResult run(FriendGraph graph, int source, int maxDepth) {
+        int userCount = graph.size();
+        int[] distance = new int[userCount];
+        int[] parent = new int[userCount];
+        Arrays.fill(distance, BfsResult.UNREACHED);
+        Arrays.fill(parent, BfsResult.UNREACHED);
+        long[] visited = new long[(userCount + 63) >>> 6];
+        int[] queue = new int[userCount];
+
+        queue[0] = source;
+        distance[source] = 0;
+        visited[source >>> 6] |= 1L << source;
+        int levelStart = 0;
+        int levelEnd = 1;
+        int depth = 0;
+
+        long unexploredEdges = 2 * graph.edgeCount() - graph.degree(source);
+        long frontierEdges = graph.degree(source);
+        boolean bottomUp = false;
+        long[] frontier = null;
+
+        while (levelStart < levelEnd && depth < maxDepth) {
+            int frontierSize = levelEnd - levelStart;
+            if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < userCount / BETA) {
+                bottomUp = false;
+            }
+
+            int next = levelEnd;
+            int nextDepth = depth + 1;
+            if (bottomUp) {
+                if (frontier == null) {
+                    frontier = new long[visited.length];
+                } else {
+                    Arrays.fill(frontier, 0);
+                }
+                for (int i = levelStart; i < levelEnd; i++) {
+                    frontier[queue[i] >>> 6] |= 1L << queue[i];
+                }
+                for (int id = 0; id < userCount; id++) {
+                    if ((visited[id >>> 6] & (1L << id)) != 0) {
+                        continue;
+                    }
+                    for (int friend : graph.neighbors(id)) {
+                        if (friend < userCount && (frontier[friend >>> 6] & (1L << friend)) != 0) {
+                            visited[id >>> 6] |= 1L << id;
+                            distance[id] = nextDepth;
+                            parent[id] = friend;
+                            queue[next++] = id;
+                            break;
+                        }
+                    }
+                }
+            } else {
+                for (int i = levelStart; i < levelEnd; i++) {
+                    int current = queue[i];
+                    for (int friend : graph.neighbors(current)) {
+                        // Users registered after the search started are left out
+                        if (friend >= userCount || (visited[friend >>> 6] & (1L << friend)) != 0) {
+                            continue;
+                        }
+                        visited[friend >>> 6] |= 1L << friend;
+                        distance[friend] = nextDepth;
+                        parent[friend] = current;
+                        queue[next++] = friend;
+                    }
+                }
+            }
+
+            frontierEdges = 0;
+            for (int i = levelEnd; i < next; i++) {
+                frontierEdges += graph.degree(queue[i]);
+            }
+            unexploredEdges -= frontierEdges;
+            levelStart = levelEnd;
+            levelEnd = next;
+            if (levelStart < levelEnd) {
+                depth = nextDepth;
+            }
+        }
+        return new BfsResult(graph, source, distance, parent, queue, levelEnd, depth);
+    }
+}
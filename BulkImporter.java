@@ -0,0 +1,762 @@
+package socialMediaPlatform;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Merges large user and friendship files into a network in one pass, instead
+// of one addUser/addFriend (and one log record) per row.
+//
+// Both files have two columns per line, separated by a tab or a comma (a line
+// with a tab outside quotes is tab-separated):
+//   users   username, name (the rest of the line, so names may contain commas)
+//   edges   username1, username2 (further columns are ignored)
+// Blank lines and lines starting with # are skipped, as is a first line whose
+// first column is "username" or "username1". A column that starts with a
+// double quote runs to the closing quote, with "" standing for a quote inside it.
+//
+// Each file is cut into line-aligned chunks that are memory-mapped and parsed
+// in parallel. Friendships become one long per row, (smaller id, larger id),
+// so a parallel sort brings repeats together and they are dropped in one scan.
+// Rows are then built CSR-style from exact degree counts. The result is a
+// staged graph that SocialNetwork writes out as a single snapshot.
+final class BulkImporter {
+
+    // Bad rows listed in the report; the rest are only counted
+    static final int MAX_SAMPLE_ROWS = 20;
+
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    private static final long MAX_CHUNK_BYTES = 64L << 20;
+    // Ids are packed with a direction bit into a non-negative long
+    private static final int MAX_USERS = 1 << 30;
+    private static final int MAX_SAMPLE_TEXT = 80;
+
+    static final class Report {
+        final int usersAdded;
+        final int usersSkipped;
+        final long friendshipsAdded;
+        final long duplicateFriendships;
+        final long badRows;
+        final List<String> badRowSamples;
+
+        Report(int usersAdded, int usersSkipped, long friendshipsAdded, long duplicateFriendships,
+               long badRows, List<String> badRowSamples) {
+            this.usersAdded = usersAdded;
+            this.usersSkipped = usersSkipped;
+            this.friendshipsAdded = friendshipsAdded;
+            this.duplicateFriendships = duplicateFriendships;
+            this.badRows = badRows;
+            this.badRowSamples = badRowSamples;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(String.format(
+                    "usersAdded=%d usersSkipped=%d friendshipsAdded=%d duplicateFriendships=%d badRows=%d",
+                    usersAdded, usersSkipped, friendshipsAdded, duplicateFriendships, badRows));
+            for (String sample : badRowSamples) {
+                text.append(System.lineSeparator()).append("  ").append(sample);
+            }
+            return text.toString();
+        }
+    }
+
+    // Staged graph plus what it took to build it. Follower counts of existing
+    // users are only touched by applyFollowCounts, once the caller commits.
+    static final class Result {
+        final FriendGraph graph;
+        final Report report;
+        private final int[] addedFollowers;
+        private final int[] addedFollowing;
+
+        private Result(FriendGraph graph, Report report, int[] addedFollowers, int[] addedFollowing) {
+            this.graph = graph;
+            this.report = report;
+            this.addedFollowers = addedFollowers;
+            this.addedFollowing = addedFollowing;
+        }
+
+        // Counts each new friendship the way addFriend does: the first user
+        // gains a follower, the second a followed user
+        void applyFollowCounts() {
+            adjustFollowCounts(1);
+        }
+
+        void undoFollowCounts() {
+            adjustFollowCounts(-1);
+        }
+
+        private void adjustFollowCounts(int sign) {
+            for (int id = 0; id < addedFollowers.length; id++) {
+                UserDirectory user = graph.user(id);
+                user.restoreCounts(user.getFollowerCount() + sign * addedFollowers[id],
+                        user.getFollowingCount() + sign * addedFollowing[id]);
+            }
+        }
+    }
+
+    private final FriendGraph base;
+    private final ForkJoinPool pool;
+    private final UsernameTable ids;
+    private final List<UserDirectory> newUsers = new ArrayList<>();
+    private final List<String> samples = new ArrayList<>();
+    private int usersSkipped;
+    private long badRows;
+
+    private BulkImporter(FriendGraph base, ForkJoinPool pool) throws IOException {
+        this.base = base;
+        this.pool = pool;
+        int existing = base.size();
+        this.ids = new UsernameTable(existing);
+        for (int id = 0; id < existing; id++) {
+            ids.add(base.user(id).getUsername());
+        }
+    }
+
+    // Either file may be null. The caller must keep writers out of base until
+    // the result has been written and swapped in.
+    static Result run(FriendGraph base, Path usersFile, Path edgesFile, ForkJoinPool pool) throws IOException {
+        BulkImporter importer = new BulkImporter(base, pool);
+        if (usersFile != null) {
+            importer.readUsers(usersFile);
+        }
+        long[] edges = edgesFile == null ? new long[0] : importer.readEdges(edgesFile);
+        return importer.build(edges);
+    }
+
+    // Usage: java socialMediaPlatform.BulkImporter <users file|-> <edges file|->
+    // Imports into the network in ./data; - skips a file
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BulkImporter <users file|-> <edges file|->");
+            System.exit(2);
+        }
+        try (SocialNetwork network = new SocialNetwork()) {
+            Report report = network.importNetwork(args[0].equals("-") ? null : Paths.get(args[0]),
+                    args[1].equals("-") ? null : Paths.get(args[1]));
+            System.out.println(report);
+        }
+    }
+
+    private void readUsers(Path file) throws IOException {
+        List<UserChunk> chunks = parse(file, UserChunk::new);
+        for (UserChunk chunk : chunks) {
+            for (int i = 0; i < chunk.usernames.size(); i++) {
+                String username = chunk.usernames.get(i);
+                if (ids.size() == MAX_USERS) {
+                    throw new IOException("Too many users for one import.");
+                }
+                if (!ids.add(username)) {
+                    usersSkipped++;
+                    continue;
+                }
+                newUsers.add(new UserDirectory(username, chunk.names.get(i)));
+            }
+        }
+    }
+
+    // Sorted packed friendships, repeats included
+    private long[] readEdges(Path file) throws IOException {
+        List<EdgeChunk> chunks = parse(file, EdgeChunk::new);
+        int total = 0;
+        for (EdgeChunk chunk : chunks) {
+            if ((long) total + chunk.count > Integer.MAX_VALUE - 8) {
+                throw new IOException("Too many friendships for one import.");
+            }
+            total += chunk.count;
+        }
+        long[] edges = new long[total];
+        int position = 0;
+        for (EdgeChunk chunk : chunks) {
+            System.arraycopy(chunk.edges, 0, edges, position, chunk.count);
+            position += chunk.count;
+        }
+        Arrays.parallelSort(edges);
+        return edges;
+    }
+
+    private Result build(long[] edges) {
+        int existing = base.size();
+        int userCount = existing + newUsers.size();
+        int[] addedFollowers = new int[userCount];
+        int[] addedFollowing = new int[userCount];
+        int[] offsets = new int[userCount + 1];
+
+        // Keep the first row of each pair that is not already a friendship; a
+        // pair's rows are adjacent and the one listed smaller id first sorts first
+        int unique = 0;
+        long duplicates = 0;
+        long previous = -1;
+        for (long edge : edges) {
+            long pair = edge >>> 1;
+            int low = (int) (pair >>> 32);
+            int high = (int) pair;
+            if (pair == previous || high < existing && base.connected(low, high)) {
+                duplicates++;
+            } else {
+                edges[unique++] = edge;
+                offsets[low + 1]++;
+                offsets[high + 1]++;
+                if ((edge & 1) == 0) {
+                    addedFollowers[low]++;
+                    addedFollowing[high]++;
+                } else {
+                    addedFollowers[high]++;
+                    addedFollowing[low]++;
+                }
+            }
+            previous = pair;
+        }
+
+        for (int id = 0; id < existing; id++) {
+            offsets[id + 1] += base.degree(id);
+        }
+        for (int id = 0; id < userCount; id++) {
+            offsets[id + 1] += offsets[id];
+        }
+        int[] ends = new int[offsets[userCount]];
+        int[] fill = Arrays.copyOf(offsets, userCount);
+        for (int id = 0; id < existing; id++) {
+            int[] row = base.neighbors(id);
+            System.arraycopy(row, 0, ends, fill[id], row.length);
+            fill[id] += row.length;
+        }
+        for (int e = 0; e < unique; e++) {
+            long pair = edges[e] >>> 1;
+            int low = (int) (pair >>> 32);
+            int high = (int) pair;
+            ends[fill[low]++] = high;
+            ends[fill[high]++] = low;
+        }
+        pool.invoke(new SortRows(ends, offsets, 0, userCount));
+
+        FriendGraph staged = new FriendGraph(userCount);
+        for (int id = 0; id < existing; id++) {
+            staged.stage(id, base.user(id), Arrays.copyOfRange(ends, offsets[id], offsets[id + 1]));
+        }
+        for (int id = existing; id < userCount; id++) {
+            staged.restore(id, newUsers.get(id - existing), Arrays.copyOfRange(ends, offsets[id], offsets[id + 1]));
+        }
+        staged.addRestoredEdges(base.edgeCount() + unique);
+
+        Report report = new Report(newUsers.size(), usersSkipped, unique, duplicates, badRows, List.copyOf(samples));
+        return new Result(staged, report, addedFollowers, addedFollowing);
+    }
+
+    // Splits the file at line starts, parses the chunks in parallel and
+    // collects their bad rows with file-wide line numbers
+    private <T extends Chunk> List<T> parse(Path file, ChunkFactory<T> factory) throws IOException {
+        List<T> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkBytes = Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES,
+                    size / (4L * pool.getParallelism())));
+            long start = 0;
+            while (start < size) {
+                long end = lineStart(channel, Math.min(size, start + chunkBytes));
+                chunks.add(factory.create(channel, start, end));
+                start = end;
+            }
+            try {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        ForkJoinTask.invokeAll(chunks);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        long line = 0;
+        for (T chunk : chunks) {
+            badRows += chunk.badRows;
+            for (Map.Entry<Integer, String> sample : chunk.samples.entrySet()) {
+                if (samples.size() == MAX_SAMPLE_ROWS) {
+                    break;
+                }
+                samples.add(file.getFileName() + ":" + (line + sample.getKey() + 1) + ": " + sample.getValue());
+            }
+            line += chunk.lines;
+        }
+        return chunks;
+    }
+
+    // First position at or after position that begins a line
+    private static long lineStart(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        if (position == 0 || position >= size) {
+            return Math.min(position, size);
+        }
+        ByteBuffer window = ByteBuffer.allocate(64 * 1024);
+        long at = position - 1;
+        while (at < size) {
+            window.clear();
+            int read = channel.read(window, at);
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return at + i + 1;
+                }
+            }
+            at += Math.max(read, 1);
+        }
+        return size;
+    }
+
+    private interface ChunkFactory<T extends Chunk> {
+        T create(FileChannel channel, long start, long end);
+    }
+
+    // One line-aligned slice of a file. The mapped bytes are copied a window
+    // at a time and taken apart in place; Strings are only made for columns
+    // that need them. Subclasses handle a row given the bounds of its first
+    // column and return null, or return why the row was rejected.
+    @SuppressWarnings("serial")
+    private abstract static class Chunk extends RecursiveAction {
+        private static final int WINDOW_BYTES = 64 * 1024;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        // The current window; row() gets positions in it
+        byte[] bytes = new byte[WINDOW_BYTES];
+        int lines;
+        long badRows;
+        // Bad rows by chunk-relative line; batched rows are rejected out of order
+        final SortedMap<Integer, String> samples = new TreeMap<>();
+
+        Chunk(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        // The line is bytes[from, to); its first column ends at firstEnd, the
+        // delimiter (or to, if there is none)
+        abstract String row(int from, int firstEnd, int to, byte delimiter);
+
+        abstract boolean isHeader(String first);
+
+        // Called before the window moves on; rows may keep positions in it until then
+        void windowDone() {
+        }
+
+        @Override
+        protected void compute() {
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            int limit = buffer.limit();
+            int position = 0;
+            int filled = 0;
+            while (true) {
+                int read = Math.min(bytes.length - filled, limit - position);
+                buffer.get(position, bytes, filled, read);
+                position += read;
+                int scanFrom = filled;
+                filled += read;
+                int lineFrom = 0;
+                for (int i = scanFrom; i < filled; i++) {
+                    if (bytes[i] == '\n') {
+                        line(lineFrom, i);
+                        lineFrom = i + 1;
+                    }
+                }
+                if (position == limit) {
+                    if (lineFrom < filled) {
+                        line(lineFrom, filled);
+                    }
+                    windowDone();
+                    return;
+                }
+                windowDone();
+                // Carry the unfinished line over, making room if it fills the window
+                System.arraycopy(bytes, lineFrom, bytes, 0, filled - lineFrom);
+                filled -= lineFrom;
+                if (filled == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+            }
+        }
+
+        private void line(int from, int to) {
+            if (to > from && bytes[to - 1] == '\r') {
+                to--;
+            }
+            boolean header = start == 0 && lines == 0;
+            lines++;
+            int first = from;
+            while (first < to && blank(bytes[first])) {
+                first++;
+            }
+            if (first == to || bytes[first] == '#') {
+                return;
+            }
+            byte delimiter = delimiter((byte) '\t', from, to) < to ? (byte) '\t' : (byte) ',';
+            int firstEnd = delimiter(delimiter, from, to);
+            if (header && isHeader(text(from, firstEnd))) {
+                return;
+            }
+            String reason = row(from, firstEnd, to, delimiter);
+            if (reason != null) {
+                reject(reason, from, to, lines - 1);
+            }
+        }
+
+        // Counts a bad row; line is the chunk-relative line index
+        void reject(String reason, int from, int to, int line) {
+            badRows++;
+            if (samples.size() < MAX_SAMPLE_ROWS) {
+                String text = new String(bytes, from, to - from, StandardCharsets.UTF_8);
+                samples.put(line, reason + ": " + (text.length() > MAX_SAMPLE_TEXT
+                        ? text.substring(0, MAX_SAMPLE_TEXT) + "..." : text));
+            }
+        }
+
+        // End of the column starting at from: the first delimiter in [from, to),
+        // or to. A column that starts with a quote runs to its closing quote.
+        int delimiter(byte delimiter, int from, int to) {
+            int i = from;
+            while (i < to && blank(bytes[i]) && bytes[i] != delimiter) {
+                i++;
+            }
+            if (i < to && bytes[i] == '"') {
+                for (i++; i < to; i++) {
+                    if (bytes[i] == '"') {
+                        if (i + 1 < to && bytes[i + 1] == '"') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+            }
+            return indexOf(delimiter, Math.min(i, to), to);
+        }
+
+        // Bytes of multi-byte UTF-8 characters are negative and never blank
+        private static boolean blank(byte value) {
+            return value >= 0 && value <= ' ';
+        }
+
+        // Position of the first value in [from, to), or to
+        int indexOf(byte value, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == value) {
+                    return i;
+                }
+            }
+            return to;
+        }
+
+        // Bounds of a column without surrounding blanks and quotes, packed as start << 32 | end
+        long column(int from, int to) {
+            while (from < to && blank(bytes[from])) {
+                from++;
+            }
+            while (to > from && blank(bytes[to - 1])) {
+                to--;
+            }
+            if (to - from >= 2 && bytes[from] == '"' && bytes[to - 1] == '"') {
+                from++;
+                to--;
+            }
+            return (long) from << 32 | to;
+        }
+
+        // Whether a column still holds a quote, i.e. "" that must be unescaped
+        boolean escaped(long column) {
+            return indexOf((byte) '"', (int) (column >>> 32), (int) column) < (int) column;
+        }
+
+        String text(int from, int to) {
+            long column = column(from, to);
+            String text = new String(bytes, (int) (column >>> 32), (int) column - (int) (column >>> 32),
+                    StandardCharsets.UTF_8);
+            return escaped(column) ? text.replace("\"\"", "\"") : text;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class UserChunk extends Chunk {
+        final List<String> usernames = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+
+        UserChunk(FileChannel channel, long start, long end) {
+            super(channel, start, end);
+        }
+
+        // Names may contain the delimiter, so the name is the rest of the line
+        @Override
+        String row(int from, int firstEnd, int to, byte delimiter) {
+            String username = text(from, firstEnd);
+            String name = firstEnd < to ? text(firstEnd + 1, to) : "";
+            if (username.isEmpty()) {
+                return "missing username";
+            }
+            if (name.isEmpty()) {
+                return "missing name";
+            }
+            usernames.add(username);
+            names.add(name);
+            return null;
+        }
+
+        @Override
+        boolean isHeader(String first) {
+            return first.equalsIgnoreCase("username");
+        }
+    }
+
+    // Rows are resolved in batches: the table slots of a whole batch are
+    // touched first, so their cache misses overlap instead of each lookup
+    // waiting for the one before it
+    @SuppressWarnings("serial")
+    private final class EdgeChunk extends Chunk {
+        private static final int BATCH = 64;
+
+        long[] edges = new long[1024];
+        int count;
+        private int pending;
+        private final int[] lineFrom = new int[BATCH];
+        private final int[] lineTo = new int[BATCH];
+        private final int[] lineIndex = new int[BATCH];
+        // Username column bounds and hashes, two per row
+        private final long[] columns = new long[2 * BATCH];
+        private final int[] hashes = new int[2 * BATCH];
+        // Bytes of unescaped quoted usernames, looked up as they are
+        private final byte[][] unescaped = new byte[2 * BATCH][];
+
+        EdgeChunk(FileChannel channel, long start, long end) {
+            super(channel, start, end);
+        }
+
+        // Extra columns, e.g. a weight, are ignored
+        @Override
+        String row(int from, int firstEnd, int to, byte delimiter) {
+            int secondEnd = delimiter(delimiter, firstEnd + 1, to);
+            long first = column(from, firstEnd);
+            long second = firstEnd == to ? 0 : column(firstEnd + 1, secondEnd);
+            if ((int) second == (int) (second >>> 32)) {
+                return "missing second username";
+            }
+            lineFrom[pending] = from;
+            lineTo[pending] = to;
+            lineIndex[pending] = lines - 1;
+            queue(2 * pending, first, from, firstEnd);
+            queue(2 * pending + 1, second, firstEnd + 1, secondEnd);
+            if (++pending == BATCH) {
+                resolve();
+            }
+            return null;
+        }
+
+        private void queue(int slot, long column, int from, int to) {
+            columns[slot] = column;
+            if (escaped(column)) {
+                unescaped[slot] = text(from, to).getBytes(StandardCharsets.UTF_8);
+                hashes[slot] = UsernameTable.hash(unescaped[slot], 0, unescaped[slot].length);
+            } else {
+                unescaped[slot] = null;
+                hashes[slot] = UsernameTable.hash(bytes, (int) (column >>> 32), (int) column);
+            }
+        }
+
+        @Override
+        void windowDone() {
+            resolve();
+        }
+
+        private void resolve() {
+            long touched = 0;
+            for (int i = 0; i < 2 * pending; i++) {
+                touched += ids.touch(hashes[i]);
+            }
+            if (touched == 42) {
+                // Keeps the loads above from being optimized away
+                Thread.onSpinWait();
+            }
+            for (int row = 0; row < pending; row++) {
+                int id1 = find(2 * row);
+                int id2 = find(2 * row + 1);
+                if (id1 < 0 || id2 < 0) {
+                    long column = columns[id1 < 0 ? 2 * row : 2 * row + 1];
+                    int from = (int) (column >>> 32);
+                    reject("unknown user " + text(from, (int) column), lineFrom[row], lineTo[row], lineIndex[row]);
+                    continue;
+                }
+                if (id1 == id2) {
+                    reject("a user cannot be friends with themselves", lineFrom[row], lineTo[row], lineIndex[row]);
+                    continue;
+                }
+                if (count == edges.length) {
+                    edges = Arrays.copyOf(edges, count * 2);
+                }
+                int low = Math.min(id1, id2);
+                int high = Math.max(id1, id2);
+                edges[count++] = ((long) low << 32 | high) << 1 | (id1 == low ? 0 : 1);
+            }
+            pending = 0;
+        }
+
+        private int find(int slot) {
+            if (unescaped[slot] != null) {
+                return ids.find(hashes[slot], unescaped[slot], 0, unescaped[slot].length);
+            }
+            long column = columns[slot];
+            return ids.find(hashes[slot], bytes, (int) (column >>> 32), (int) column);
+        }
+
+        @Override
+        boolean isHeader(String first) {
+            return first.equalsIgnoreCase("username1") || first.equalsIgnoreCase("username");
+        }
+    }
+
+    // Usernames by their UTF-8 bytes, so friendship rows are resolved without
+    // making a String per column. Ids are handed out in insertion order. Each
+    // slot is two adjacent longs, hash and id, then offset and length of the
+    // bytes in a shared array, so a lookup touches the table and the bytes
+    // and nothing else. Safe to read from several threads once nothing is
+    // added anymore.
+    private static final class UsernameTable {
+        private long[] slots;
+        private int mask;
+        private int size;
+        private byte[] blob = new byte[1 << 16];
+        private int blobLength;
+
+        UsernameTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1)) << 1;
+            slots = new long[2 * capacity];
+            mask = capacity - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        // Gives the username the next id; false if it already has one
+        boolean add(String username) throws IOException {
+            byte[] bytes = username.getBytes(StandardCharsets.UTF_8);
+            int hash = hash(bytes, 0, bytes.length);
+            int slot = hash & mask;
+            while (slots[2 * slot] != 0) {
+                if (matches(slot, hash, bytes, 0, bytes.length)) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (blobLength > Integer.MAX_VALUE - 8 - bytes.length) {
+                throw new IOException("Too many usernames for one import.");
+            }
+            if (blobLength + bytes.length > blob.length) {
+                blob = Arrays.copyOf(blob, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max((long) blobLength + bytes.length, blob.length * 2L)));
+            }
+            System.arraycopy(bytes, 0, blob, blobLength, bytes.length);
+            slots[2 * slot] = (long) hash << 32 | ++size;
+            slots[2 * slot + 1] = (long) blobLength << 32 | bytes.length;
+            blobLength += bytes.length;
+            if (size * 2 > mask + 1) {
+                grow();
+            }
+            return true;
+        }
+
+        // Id of the username in bytes[from, to), whose hash is given, or -1
+        int find(int hash, byte[] bytes, int from, int to) {
+            int slot = hash & mask;
+            while (slots[2 * slot] != 0) {
+                if (matches(slot, hash, bytes, from, to)) {
+                    return (int) slots[2 * slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // Loads the slot a hash starts probing at and the first byte of its
+        // username, so a later find finds them in cache
+        int touch(int hash) {
+            long location = slots[2 * (hash & mask) + 1];
+            return blob[(int) (location >>> 32)];
+        }
+
+        private boolean matches(int slot, int hash, byte[] bytes, int from, int to) {
+            if ((int) (slots[2 * slot] >>> 32) != hash) {
+                return false;
+            }
+            long location = slots[2 * slot + 1];
+            int offset = (int) (location >>> 32);
+            return Arrays.equals(blob, offset, offset + (int) location, bytes, from, to);
+        }
+
+        private void grow() {
+            long[] old = slots;
+            slots = new long[old.length * 2];
+            mask = (slots.length >>> 1) - 1;
+            for (int i = 0; i < old.length; i += 2) {
+                if (old[i] != 0) {
+                    int slot = (int) (old[i] >>> 32) & mask;
+                    while (slots[2 * slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    slots[2 * slot] = old[i];
+                    slots[2 * slot + 1] = old[i + 1];
+                }
+            }
+        }
+
+        static int hash(byte[] bytes, int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            // Spread the bits the low-order mask keeps
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    // Sorts every user's slice of the CSR target array
+    @SuppressWarnings("serial")
+    private static final class SortRows extends RecursiveAction {
+        private static final int MIN_USERS = 4096;
+        private final int[] ends;
+        private final int[] offsets;
+        private final int from;
+        private final int to;
+
+        SortRows(int[] ends, int[] offsets, int from, int to) {
+            this.ends = ends;
+            this.offsets = offsets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_USERS) {
+                for (int id = from; id < to; id++) {
+                    Arrays.sort(ends, offsets[id], offsets[id + 1]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SortRows(ends, offsets, from, middle), new SortRows(ends, offsets, middle, to));
+        }
+    }
+}
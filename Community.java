@@ -0,0 +1,25 @@
+package socialMediaPlatform;
+
+// A connected group of travellers: one member standing for it, and its size
+final class Community {
+    private final UserDirectory representative;
+    private final int size;
+
+    Community(UserDirectory representative, int size) {
+        this.representative = representative;
+        this.size = size;
+    }
+
+    public UserDirectory getRepresentative() {
+        return representative;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return representative.getName() + "'s community (" + size + " travellers)";
+    }
+}
@@ -0,0 +1,236 @@
+package socialMediaPlatform;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Connected components of the friend graph. New friendships are merged into
+// a union-find forest (union by size, path halving), so lookups cost a few
+// array reads. Union-find cannot split a component, so a removed friendship
+// is first checked for a short detour between its two users. The check reads
+// a bounded number of friend ids, since around hubs a few hops reach most of
+// the network; only if it finds no detour within that is the index marked
+// stale, and the next query rebuilds it with a parallel min-label
+// propagation over the whole graph.
+//
+// The index is also built lazily on the first query, so loading a mapped
+// snapshot does not read every friend list up front.
+class ConnectivityIndex {
+
+    // A removal whose users are still this close is known not to split anything
+    private static final int DETOUR_HOPS = 4;
+    // Friend ids the detour search may read before it gives up
+    private static final int DETOUR_SCAN = 1 << 14;
+    // Ids per rebuild task
+    private static final int SLICE = 1 << 14;
+
+    private final ForkJoinPool pool;
+    private int[] parent = new int[0];
+    private int[] size = new int[0];
+    // Ids 0..count-1 are in the forest; later ids are singletons until touched
+    private int count;
+    private int components;
+    private boolean valid;
+
+    ConnectivityIndex(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Callers update the index after releasing their user locks, so the pair
+    // may have been unlinked again meanwhile; merging it then would outlive
+    // the removal's own check, which may already have run
+    synchronized void friendshipAdded(FriendGraph graph, int a, int b) {
+        if (!valid || !graph.connected(a, b)) {
+            return;
+        }
+        extend(graph.size());
+        union(a, b);
+    }
+
+    void friendshipRemoved(FriendGraph graph, int a, int b) {
+        synchronized (this) {
+            if (!valid) {
+                return;
+            }
+        }
+        // Searched without holding the index so other changes are not held up
+        if (ShortestPath.find(graph, a, b, DETOUR_HOPS, DETOUR_SCAN).length == 0) {
+            invalidate();
+        }
+    }
+
+    // Drops everything, e.g. after ids were reassigned
+    synchronized void invalidate() {
+        valid = false;
+    }
+
+    // Root id of the user's component; changes when components merge or the index is rebuilt
+    synchronized int component(FriendGraph graph, int id) {
+        ensureValid(graph);
+        return find(id);
+    }
+
+    synchronized int componentSize(FriendGraph graph, int id) {
+        ensureValid(graph);
+        return size[find(id)];
+    }
+
+    synchronized boolean connected(FriendGraph graph, int a, int b) {
+        ensureValid(graph);
+        return find(a) == find(b);
+    }
+
+    synchronized int componentCount(FriendGraph graph) {
+        ensureValid(graph);
+        return components;
+    }
+
+    // Root ids of the largest components, biggest first
+    synchronized int[] largest(FriendGraph graph, int limit) {
+        ensureValid(graph);
+        PriorityQueue<Integer> best = new PriorityQueue<>(Comparator.comparingInt((Integer root) -> size[root]));
+        for (int id = 0; id < count; id++) {
+            if (parent[id] != id) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.add(id);
+            } else if (limit > 0 && size[id] > size[best.peek()]) {
+                best.poll();
+                best.add(id);
+            }
+        }
+        int[] roots = new int[best.size()];
+        for (int i = roots.length - 1; i >= 0; i--) {
+            roots[i] = best.poll();
+        }
+        return roots;
+    }
+
+    private void ensureValid(FriendGraph graph) {
+        if (!valid) {
+            rebuild(graph);
+            valid = true;
+        }
+        extend(graph.size());
+    }
+
+    // Adds ids registered since the last call as singletons
+    private void extend(int userCount) {
+        if (userCount <= count) {
+            return;
+        }
+        if (userCount > parent.length) {
+            int capacity = Math.max(userCount, parent.length + (parent.length >> 1));
+            parent = Arrays.copyOf(parent, capacity);
+            size = Arrays.copyOf(size, capacity);
+        }
+        for (int id = count; id < userCount; id++) {
+            parent[id] = id;
+            size[id] = 1;
+        }
+        components += userCount - count;
+        count = userCount;
+    }
+
+    private int find(int id) {
+        if (id >= count) {
+            extend(id + 1);
+        }
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]];
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        components--;
+    }
+
+    // Every user repeatedly takes the smallest label among itself and its
+    // friends, then jumps to its label's label, until a pass changes nothing.
+    // The smallest id of each component ends up labelling all of it, which is
+    // exactly a union-find forest of depth one.
+    private void rebuild(FriendGraph graph) {
+        int userCount = graph.size();
+        int[] labels = new int[userCount];
+        for (int id = 0; id < userCount; id++) {
+            labels[id] = id;
+        }
+        while (pool.invoke(new Propagate(graph, labels, 0, userCount))) {
+            // keep going until stable
+        }
+
+        int[] sizes = new int[labels.length];
+        int roots = 0;
+        for (int id = 0; id < userCount; id++) {
+            sizes[labels[id]]++;
+            if (labels[id] == id) {
+                roots++;
+            }
+        }
+        parent = labels;
+        size = sizes;
+        count = userCount;
+        components = roots;
+    }
+
+    // One pass over [from, to); true if any label changed. Each task writes
+    // only its own ids and may read a neighbour's label from this pass or the
+    // last, which only affects how many passes are needed.
+    @SuppressWarnings("serial")
+    private static final class Propagate extends RecursiveTask<Boolean> {
+        private final FriendGraph graph;
+        private final int[] labels;
+        private final int from;
+        private final int to;
+
+        Propagate(FriendGraph graph, int[] labels, int from, int to) {
+            this.graph = graph;
+            this.labels = labels;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (to - from > SLICE) {
+                int middle = (from + to) >>> 1;
+                Propagate left = new Propagate(graph, labels, from, middle);
+                left.fork();
+                boolean right = new Propagate(graph, labels, middle, to).compute();
+                return left.join() | right;
+            }
+            boolean changed = false;
+            for (int id = from; id < to; id++) {
+                int label = labels[id];
+                for (int friend : graph.neighbors(id)) {
+                    // Users registered after the rebuild started are added later
+                    if (friend < labels.length && labels[friend] < label) {
+                        label = labels[friend];
+                    }
+                }
+                // Shortcut through the label's own label
+                label = Math.min(label, labels[label]);
+                if (label < labels[id]) {
+                    labels[id] = label;
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package socialMediaPlatform;
+
+import java.util.List;
+
+// One page of a home feed, newest first. Pass the cursor back to get the
+// posts that follow; it is null once the feed has nothing older.
+final class FeedPage {
+    private final List<Post> posts;
+    private final String nextCursor;
+
+    FeedPage(List<Post> posts, String nextCursor) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Post> getPosts() {
+        return posts;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
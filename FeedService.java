@@ -0,0 +1,201 @@
+package socialMediaPlatform;
+
+import java.util.*;
+
+// Home feeds built from friends' timelines with a hybrid fan-out.
+//
+// A post by a user with at most fanOutLimit friends is pushed into the inbox
+// of each friend who has one (fan-out on write), so for most authors a feed
+// read costs nothing extra. Posts by users with more friends are never pushed;
+// readers pull them from those few authors' timelines at read time (fan-out
+// on read), so one hub posting does not touch hundreds of thousands of
+// inboxes. A page is a heap-based k-way merge of the inbox and the pulled
+// timelines, positioned with a (timestamp, id) cursor.
+//
+// Inboxes are a cache: built on a user's first read, dropped when that user's
+// friendships change, and rebuilt on the next read. Each holds at most
+// inboxCapacity posts, and only the maxInboxes most recently read are kept.
+// Posts their author's timeline has since evicted are skipped when a page is
+// read.
+class FeedService {
+
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int DEFAULT_FAN_OUT_LIMIT = 1000;
+    static final int DEFAULT_INBOX_CAPACITY = 500;
+    static final int DEFAULT_MAX_INBOXES = 10_000;
+
+    private final int fanOutLimit;
+    private final int inboxCapacity;
+    private final int maxInboxes;
+    // Least recently read first; reads move an inbox to the end, pushes do
+    // not. Guarded by itself, and never held while an inbox is locked.
+    private final LinkedHashMap<Integer, PostTimeline> inboxes;
+
+    FeedService(int fanOutLimit, int inboxCapacity, int maxInboxes) {
+        this.fanOutLimit = fanOutLimit;
+        this.inboxCapacity = inboxCapacity;
+        this.maxInboxes = maxInboxes;
+        this.inboxes = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, PostTimeline> eldest) {
+                return size() > FeedService.this.maxInboxes;
+            }
+        };
+    }
+
+    // Call after the post is already in the author's timeline
+    void postAdded(FriendGraph graph, int authorId, Post post) {
+        if (!pushes(graph, authorId)) {
+            return;
+        }
+        for (int friend : graph.neighbors(authorId)) {
+            PostTimeline inbox;
+            synchronized (inboxes) {
+                inbox = inboxes.get(friend);
+            }
+            if (inbox != null) {
+                inbox.add(post, inboxCapacity);
+            }
+        }
+    }
+
+    // Call after the edge between a and b has been added or removed
+    void friendshipChanged(FriendGraph graph, int a, int b) {
+        synchronized (inboxes) {
+            inboxes.remove(a);
+            inboxes.remove(b);
+        }
+        // An author who just crossed the limit changes between pushed and
+        // pulled; their friends' inboxes are rebuilt to match
+        dropInboxesIfCrossed(graph, a);
+        dropInboxesIfCrossed(graph, b);
+    }
+
+    // Drops every inbox, e.g. after ids were reassigned
+    void clear() {
+        synchronized (inboxes) {
+            inboxes.clear();
+        }
+    }
+
+    int inboxCount() {
+        synchronized (inboxes) {
+            return inboxes.size();
+        }
+    }
+
+    // Posts by the reader's friends strictly older than the cursor, newest first.
+    // A null cursor starts at the newest post.
+    FeedPage page(FriendGraph graph, int readerId, String cursor, int pageSize) {
+        long afterTimestamp = Long.MAX_VALUE;
+        long afterId = Long.MAX_VALUE;
+        if (cursor != null) {
+            int separator = cursor.indexOf(':');
+            try {
+                afterTimestamp = Long.parseLong(cursor.substring(0, separator));
+                afterId = Long.parseLong(cursor.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid feed cursor: " + cursor);
+            }
+        }
+
+        List<Post[]> sources = new ArrayList<>();
+        sources.add(inbox(graph, readerId).newestFirst());
+        for (int friend : graph.neighbors(readerId)) {
+            if (!pushes(graph, friend)) {
+                sources.add(graph.user(friend).timeline());
+            }
+        }
+
+        // Heap of sources ordered by their next post; positions[i] is source i's next index
+        int[] positions = new int[sources.size()];
+        PriorityQueue<Integer> heap = new PriorityQueue<>(Math.max(1, sources.size()),
+                (x, y) -> Post.NEWEST_FIRST.compare(sources.get(x)[positions[x]], sources.get(y)[positions[y]]));
+        for (int i = 0; i < sources.size(); i++) {
+            positions[i] = firstOlderThan(sources.get(i), afterTimestamp, afterId);
+            if (positions[i] < sources.get(i).length) {
+                heap.add(i);
+            }
+        }
+
+        List<Post> posts = new ArrayList<>(pageSize);
+        Post last = null;
+        while (posts.size() < pageSize && !heap.isEmpty()) {
+            int source = heap.poll();
+            Post post = sources.get(source)[positions[source]++];
+            if (positions[source] < sources.get(source).length) {
+                heap.add(source);
+            }
+            // An author who stopped being pushed can appear in both the inbox and a pulled timeline
+            if (post != last && !post.isEvicted()) {
+                posts.add(post);
+                last = post;
+            }
+        }
+        String nextCursor = posts.size() < pageSize ? null : last.getTimestamp() + ":" + last.id();
+        return new FeedPage(posts, nextCursor);
+    }
+
+    private boolean pushes(FriendGraph graph, int authorId) {
+        return graph.degree(authorId) <= fanOutLimit;
+    }
+
+    private void dropInboxesIfCrossed(FriendGraph graph, int id) {
+        int degree = graph.degree(id);
+        if (degree == fanOutLimit || degree == fanOutLimit + 1) {
+            synchronized (inboxes) {
+                for (int friend : graph.neighbors(id)) {
+                    inboxes.remove(friend);
+                }
+            }
+        }
+    }
+
+    // Builds the inbox from the pushed friends' timelines on first use. The
+    // empty inbox is published before it is filled, so a post made meanwhile
+    // is either pushed into it or already in its author's timeline; both
+    // paths may deliver it, which PostTimeline.add ignores.
+    private PostTimeline inbox(FriendGraph graph, int readerId) {
+        PostTimeline created = new PostTimeline();
+        synchronized (created) {
+            synchronized (inboxes) {
+                PostTimeline inbox = inboxes.remove(readerId);
+                if (inbox != null) {
+                    // Back in at the most recently read end
+                    inboxes.put(readerId, inbox);
+                    return inbox;
+                }
+                inboxes.put(readerId, created);
+            }
+            for (int friend : graph.neighbors(readerId)) {
+                if (pushes(graph, friend)) {
+                    for (Post post : graph.user(friend).timeline()) {
+                        if (!created.add(post, inboxCapacity)) {
+                            // The rest of this timeline is older still
+                            break;
+                        }
+                    }
+                }
+            }
+            return created;
+        }
+    }
+
+    // Index of the first post in a newest-first array that comes after the cursor
+    private static int firstOlderThan(Post[] posts, long timestamp, long id) {
+        int low = 0;
+        int high = posts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Post post = posts[mid];
+            boolean newerOrSame = post.getTimestamp() > timestamp
+                    || (post.getTimestamp() == timestamp && post.id() >= id);
+            if (newerOrSame) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,794 @@
+package socialMediaPlatform;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Friendship graph over dense integer user ids. Every registered user gets the
+// next id, and each id owns a sorted int[] of friend ids sized exactly to its
+// degree, so an edge costs 4 bytes per direction instead of a boxed HashMap
+// node, and walking a friend list is a linear scan of one array.
+//
+// Rows are copy-on-write: link/unlink publish a new array, so readers can walk
+// a row without locking. Writers must hold SocialNetwork's stripe locks for
+// both ids; the graph itself only serializes id registration.
+//
+// Long reads pin() an immutable version instead. A version shares the
+// graph's chunks; while it is pinned, a writer copies a chunk before its
+// first change to it, so the version keeps the old one. Each pin starts a
+// new epoch, and chunks from the epoch of the newest pinned version or
+// earlier are the ones that must be copied. Once no version is pinned,
+// chunks are changed in place again, and the copies that only released
+// versions still reference are left to the garbage collector.
+//
+// Copying a row costs O(degree), so rows of users with HUB_DEGREE or more
+// friends are kept as a HubRow instead, where a change copies O(log degree)
+// entries on average (see HubBenchmark). Batches go through changeEdges(),
+// which changes each touched row once however many of its edges change.
+class FriendGraph {
+
+    private static final int[] NO_FRIENDS = new int[0];
+
+    // Ids are stored in fixed-size chunks so growing the graph never copies a
+    // slot that a concurrent writer might be updating
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Supplies users and friend lists that are not in memory yet, e.g. from a
+    // mapped snapshot. Ids below the reserved count belong to the source.
+    interface Source {
+        UserDirectory loadUser(int id);
+
+        int[] loadNeighbors(int id);
+
+        // Friend count without decoding the row
+        int loadDegree(int id);
+
+        // Single fields, without building the user
+        String loadUsername(int id);
+
+        String loadName(int id);
+
+        int loadFollowerCount(int id);
+
+        int loadFollowingCount(int id);
+
+        // Post texts and their timestamps, oldest first
+        String[] loadPostTexts(int id);
+
+        long[] loadPostTimes(int id);
+    }
+
+    // Rows of at least this many friends are kept as a HubRow
+    static final int HUB_DEGREE = 1024;
+
+    private static final class Chunk {
+        // Users never change once set, so every copy of a chunk shares them
+        final AtomicReferenceArray<UserDirectory> users;
+        // Each row is a sorted int[] or a HubRow
+        final AtomicReferenceArray<Object> rows;
+        final long epoch;
+
+        Chunk(long epoch) {
+            this.users = new AtomicReferenceArray<>(CHUNK_SIZE);
+            this.rows = new AtomicReferenceArray<>(CHUNK_SIZE);
+            this.epoch = epoch;
+        }
+
+        // A row that is still being loaded into the original may be missed;
+        // the copy then loads it again
+        Chunk(Chunk original, long epoch) {
+            this.users = original.users;
+            this.rows = new AtomicReferenceArray<>(CHUNK_SIZE);
+            for (int i = 0; i < CHUNK_SIZE; i++) {
+                Object row = original.rows.get(i);
+                if (row != null) {
+                    rows.set(i, row);
+                }
+            }
+            this.epoch = epoch;
+        }
+    }
+
+    // A pinned, read-only version of the graph. Closing it lets writers stop
+    // copying chunks for it; graph() should not be used afterwards.
+    static final class Version implements AutoCloseable {
+        private final FriendGraph graph;
+        private boolean closed;
+
+        private Version(FriendGraph graph) {
+            this.graph = graph;
+        }
+
+        FriendGraph graph() {
+            return graph;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            graph.live.release(graph.epoch);
+        }
+    }
+
+    private final Object registrationLock = new Object();
+    private final AtomicLong edgeCount = new AtomicLong();
+    private volatile AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(0);
+    private volatile int size;
+    private volatile Source source;
+    // Ids below this belong to the source
+    private volatile int reserved;
+    // Set on versions: the live graph that owns the users
+    private final FriendGraph live;
+
+    // Changes hold the read side and pin() the write side, so a version never
+    // holds half of a change
+    private final ReentrantReadWriteLock changeLock = new ReentrantReadWriteLock();
+    // Epoch new chunks are created in; on a version, the epoch it was pinned in
+    private volatile long epoch;
+    // Epoch of the newest pinned version, -1 if none; chunks from it or
+    // earlier are copied before they are changed
+    private volatile long newestPinned = -1;
+    // Pin counts by version epoch, and the newest version for reuse while
+    // nothing has changed; guarded by registrationLock
+    private final TreeMap<Long, Integer> pins = new TreeMap<>();
+    private FriendGraph newestVersion;
+    // Run once no version is pinned; guarded by registrationLock
+    private final List<Runnable> unpinnedActions = new ArrayList<>();
+    private volatile boolean changedSincePin = true;
+
+    FriendGraph() {
+        this(CHUNK_SIZE);
+    }
+
+    FriendGraph(int expectedUsers) {
+        live = null;
+        ensureCapacity(Math.max(1, expectedUsers));
+    }
+
+    private FriendGraph(FriendGraph live, long epoch) {
+        this.live = live;
+        AtomicReferenceArray<Chunk> from = live.chunks;
+        int count = live.size;
+        // Only chunk references are copied: rows are never changed in place,
+        // and a row that was never loaded is still the one in the source
+        this.chunks = new AtomicReferenceArray<>(Math.max(1, (count + CHUNK_SIZE - 1) >>> CHUNK_BITS));
+        for (int i = 0; i < chunks.length(); i++) {
+            chunks.set(i, from.get(i));
+        }
+        this.source = live.source;
+        this.reserved = live.reserved;
+        this.edgeCount.set(live.edgeCount.get());
+        this.size = count;
+        this.epoch = epoch;
+    }
+
+    // Consistent, read-only view for long-running jobs such as a traversal or
+    // an export. Costs one reference per 4096 users and waits only for changes
+    // already in progress; writers carry on meanwhile. Users are shared with
+    // this graph. Close the version when done.
+    Version pin() {
+        if (live != null) {
+            throw new UnsupportedOperationException("Pin the live graph instead of a version.");
+        }
+        changeLock.writeLock().lock();
+        try {
+            synchronized (registrationLock) {
+                if (!changedSincePin && newestVersion != null && pins.containsKey(newestVersion.epoch)) {
+                    pins.merge(newestVersion.epoch, 1, Integer::sum);
+                    return new Version(newestVersion);
+                }
+                FriendGraph version = new FriendGraph(this, epoch);
+                pins.merge(version.epoch, 1, Integer::sum);
+                newestPinned = version.epoch;
+                newestVersion = version;
+                epoch = version.epoch + 1;
+                changedSincePin = false;
+                return new Version(version);
+            }
+        } finally {
+            changeLock.writeLock().unlock();
+        }
+    }
+
+    private void release(long version) {
+        List<Runnable> actions;
+        synchronized (registrationLock) {
+            Integer count = pins.get(version);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                pins.put(version, count - 1);
+                return;
+            }
+            pins.remove(version);
+            newestPinned = pins.isEmpty() ? -1 : pins.lastKey();
+            if (newestVersion != null && newestVersion.epoch == version) {
+                newestVersion = null;
+            }
+            if (!pins.isEmpty() || unpinnedActions.isEmpty()) {
+                return;
+            }
+            actions = new ArrayList<>(unpinnedActions);
+            unpinnedActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    // Runs the action once no version of this graph is pinned, right away if
+    // none is. Used to release a graph that has been replaced.
+    void whenUnpinned(Runnable action) {
+        synchronized (registrationLock) {
+            if (!pins.isEmpty()) {
+                unpinnedActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    // Keeps pin() out while several changes are made that must show up in a
+    // version together, e.g. a batch; every beginChanges needs an endChanges
+    void beginChanges() {
+        changeLock.readLock().lock();
+    }
+
+    void endChanges() {
+        changeLock.readLock().unlock();
+    }
+
+    // Number of versions pinned right now
+    int pinnedVersions() {
+        synchronized (registrationLock) {
+            int count = 0;
+            for (int pinned : pins.values()) {
+                count += pinned;
+            }
+            return count;
+        }
+    }
+
+    // Hands ids 0..count-1 to a lazy source; they are loaded on first use
+    void reserve(int count, Source source, long edgeCount) {
+        synchronized (registrationLock) {
+            if (size != 0) {
+                throw new IllegalStateException("Ids can only be reserved in an empty graph.");
+            }
+            ensureCapacity(count);
+            this.source = source;
+            this.reserved = count;
+            this.edgeCount.set(edgeCount);
+            this.size = count;
+        }
+    }
+
+    // Gives the user the next free id
+    int register(UserDirectory user) {
+        checkWritable();
+        changeLock.readLock().lock();
+        try {
+            synchronized (registrationLock) {
+                if (user.graph() != null) {
+                    throw new IllegalStateException(user.getUsername() + " already belongs to a network.");
+                }
+                int id = size;
+                ensureCapacity(id + 1);
+                // Versions stop below this id, so its slots need no copy
+                Chunk chunk = chunks.get(id >>> CHUNK_BITS);
+                user.attach(this, id);
+                chunk.rows.set(id & CHUNK_MASK, NO_FRIENDS);
+                chunk.users.set(id & CHUNK_MASK, user);
+                size = id + 1;
+                changed();
+                return id;
+            }
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    // Registers a user whose id and friend ids were fixed by a snapshot
+    void restore(int id, UserDirectory user, int[] sortedNeighbors) {
+        checkWritable();
+        synchronized (registrationLock) {
+            ensureCapacity(id + 1);
+            Chunk chunk = chunks.get(id >>> CHUNK_BITS);
+            user.attach(this, id);
+            chunk.rows.set(id & CHUNK_MASK, sortedNeighbors.length == 0 ? NO_FRIENDS : sortedNeighbors);
+            chunk.users.set(id & CHUNK_MASK, user);
+            size = Math.max(size, id + 1);
+        }
+    }
+
+    // Puts a user that still belongs to another graph under the same id,
+    // without attaching it. Only for graphs that are written out and
+    // discarded, such as the one a bulk import builds.
+    void stage(int id, UserDirectory user, int[] sortedNeighbors) {
+        checkWritable();
+        synchronized (registrationLock) {
+            ensureCapacity(id + 1);
+            Chunk chunk = chunks.get(id >>> CHUNK_BITS);
+            chunk.rows.set(id & CHUNK_MASK, sortedNeighbors.length == 0 ? NO_FRIENDS : sortedNeighbors);
+            chunk.users.set(id & CHUNK_MASK, user);
+            size = Math.max(size, id + 1);
+        }
+    }
+
+    // Adds the counted edges of rows restored directly from a snapshot
+    void addRestoredEdges(long edges) {
+        edgeCount.addAndGet(edges);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long edgeCount() {
+        return edgeCount.get();
+    }
+
+    // Largest friend count. Rows that were never loaded are measured in the
+    // source, so a monitoring poll does not pull the whole graph into memory.
+    int maxDegree() {
+        AtomicReferenceArray<Chunk> current = chunks;
+        int count = size;
+        Source lazy = source;
+        int max = 0;
+        for (int id = 0; id < count; id++) {
+            Object row = current.get(id >>> CHUNK_BITS).rows.get(id & CHUNK_MASK);
+            int degree = row != null ? degree(row) : lazy != null ? lazy.loadDegree(id) : 0;
+            if (degree > max) {
+                max = degree;
+            }
+        }
+        return max;
+    }
+
+    UserDirectory user(int id) {
+        if (live != null) {
+            return live.user(id);
+        }
+        AtomicReferenceArray<UserDirectory> slots = chunks.get(id >>> CHUNK_BITS).users;
+        UserDirectory user = slots.get(id & CHUNK_MASK);
+        Source lazy = source;
+        if (user == null && lazy != null) {
+            UserDirectory loaded = lazy.loadUser(id);
+            loaded.attach(this, id);
+            // Another thread may have loaded the same user first; keep theirs
+            // and free the texts of the posts this copy restored
+            if (!slots.compareAndSet(id & CHUNK_MASK, null, loaded)) {
+                loaded.discardPosts();
+                return slots.get(id & CHUNK_MASK);
+            }
+            return loaded;
+        }
+        return user;
+    }
+
+    // The user if it is in memory, null if it is still only in the source
+    UserDirectory loadedUser(int id) {
+        if (live != null) {
+            return live.loadedUser(id);
+        }
+        return chunks.get(id >>> CHUNK_BITS).users.get(id & CHUNK_MASK);
+    }
+
+    // Source of the users that are not loaded yet, or null
+    Source source() {
+        return source;
+    }
+
+    // Moves a user loaded in the graph this one replaces to its id here, so
+    // the object and its posts carry over instead of being loaded again.
+    // Only before the graph is shared; a slot that is already set is kept.
+    void adopt(int id, UserDirectory user) {
+        checkWritable();
+        AtomicReferenceArray<UserDirectory> slots = chunks.get(id >>> CHUNK_BITS).users;
+        if (slots.get(id & CHUNK_MASK) == null) {
+            user.attach(this, id);
+            slots.set(id & CHUNK_MASK, user);
+        }
+    }
+
+    // Frees the post texts of every loaded user still attached to this graph.
+    // Only for a graph that has been replaced: users it handed on by adopt()
+    // belong to the new graph and keep theirs.
+    void discardPosts() {
+        AtomicReferenceArray<Chunk> current = chunks;
+        int count = size;
+        for (int id = 0; id < count; id++) {
+            UserDirectory user = current.get(id >>> CHUNK_BITS).users.get(id & CHUNK_MASK);
+            if (user != null && user.graph() == this) {
+                user.discardPosts();
+            }
+        }
+    }
+
+    // Sorted friend ids of a user. The array is shared, callers must not modify it.
+    int[] neighbors(int id) {
+        return neighbors(chunks.get(id >>> CHUNK_BITS), id);
+    }
+
+    private int[] neighbors(Chunk chunk, int id) {
+        return flat(row(chunk, id));
+    }
+
+    // The stored row, an int[] or a HubRow, loaded from the source on first use
+    private Object row(Chunk chunk, int id) {
+        AtomicReferenceArray<Object> rows = chunk.rows;
+        Object row = rows.get(id & CHUNK_MASK);
+        Source lazy = source;
+        if (row == null && lazy != null) {
+            int[] loaded = lazy.loadNeighbors(id);
+            if (!rows.compareAndSet(id & CHUNK_MASK, null, loaded)) {
+                return rows.get(id & CHUNK_MASK);
+            }
+            return loaded;
+        }
+        return row == null ? NO_FRIENDS : row;
+    }
+
+    // Friend ids for a one-pass scan such as an export: a row that is only in
+    // the source is decoded for the caller but not kept, so scanning every
+    // user does not pull the whole graph into memory
+    int[] scanNeighbors(int id) {
+        Object row = chunks.get(id >>> CHUNK_BITS).rows.get(id & CHUNK_MASK);
+        Source lazy = source;
+        if (row == null && lazy != null) {
+            return lazy.loadNeighbors(id);
+        }
+        return row == null ? NO_FRIENDS : flat(row);
+    }
+
+    // Friend count for the same kind of scan, measured in the source for a
+    // row that is not loaded
+    int scanDegree(int id) {
+        Object row = chunks.get(id >>> CHUNK_BITS).rows.get(id & CHUNK_MASK);
+        Source lazy = source;
+        if (row == null && lazy != null) {
+            return lazy.loadDegree(id);
+        }
+        return row == null ? 0 : degree(row);
+    }
+
+    // Username and name without building a user that is only in the source.
+    // Both never change, so the source's copy is used even for a loaded user.
+    String username(int id) {
+        return id < reserved ? source.loadUsername(id) : user(id).getUsername();
+    }
+
+    String name(int id) {
+        return id < reserved ? source.loadName(id) : user(id).getName();
+    }
+
+    // Whether the user's id refers to this graph (or, for a frozen copy, its live graph)
+    boolean contains(UserDirectory user) {
+        return user.graph() == (live == null ? this : live);
+    }
+
+    // Neither this nor connected() builds the sorted array of a HubRow
+    int degree(int id) {
+        return degree(row(chunks.get(id >>> CHUNK_BITS), id));
+    }
+
+    boolean connected(int id1, int id2) {
+        Object row1 = row(chunks.get(id1 >>> CHUNK_BITS), id1);
+        Object row2 = row(chunks.get(id2 >>> CHUNK_BITS), id2);
+        // Search the shorter list
+        return degree(row1) <= degree(row2) ? contains(row1, id2) : contains(row2, id1);
+    }
+
+    // Adds an undirected edge; returns false if it already existed
+    boolean link(int id1, int id2) {
+        checkWritable();
+        if (id1 == id2) {
+            throw new IllegalArgumentException("A user cannot be friends with themselves.");
+        }
+        changeLock.readLock().lock();
+        try {
+            if (connected(id1, id2)) {
+                return false;
+            }
+            Chunk chunk1 = writableChunk(id1);
+            Chunk chunk2 = writableChunk(id2);
+            chunk1.rows.set(id1 & CHUNK_MASK, change(row(chunk1, id1), new int[] {id2}, 1));
+            chunk2.rows.set(id2 & CHUNK_MASK, change(row(chunk2, id2), new int[] {id1}, 1));
+            edgeCount.incrementAndGet();
+            changed();
+            return true;
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    // Removes an undirected edge; returns false if there was none
+    boolean unlink(int id1, int id2) {
+        checkWritable();
+        changeLock.readLock().lock();
+        try {
+            if (!connected(id1, id2)) {
+                return false;
+            }
+            Chunk chunk1 = writableChunk(id1);
+            Chunk chunk2 = writableChunk(id2);
+            chunk1.rows.set(id1 & CHUNK_MASK, change(row(chunk1, id1), new int[] {~id2}, -1));
+            chunk2.rows.set(id2 & CHUNK_MASK, change(row(chunk2, id2), new int[] {~id1}, -1));
+            edgeCount.decrementAndGet();
+            changed();
+            return true;
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    // Adds and removes many edges, changing each touched row once instead of
+    // once per edge. Each long is an edge (long) id1 << 32 | id2; an edge that
+    // already exists (for links) or is missing (for unlinks) is skipped, and
+    // an edge must not appear twice. Callers hold the stripes for every id or
+    // keep all other writers out, as for link().
+    void changeEdges(long[] links, long[] unlinks) {
+        checkWritable();
+        changeLock.readLock().lock();
+        try {
+            // Both directions of every edge that really changes, as
+            // (long) id << 32 | friend, so sorting groups them by row
+            long[] added = directions(links, true);
+            long[] removed = directions(unlinks, false);
+            if (added.length == 0 && removed.length == 0) {
+                return;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < added.length || j < removed.length) {
+                int id = (int) (Math.min(i < added.length ? added[i] : Long.MAX_VALUE,
+                        j < removed.length ? removed[j] : Long.MAX_VALUE) >>> 32);
+                int addEnd = rowEnd(added, i, id);
+                int removeEnd = rowEnd(removed, j, id);
+                Chunk chunk = writableChunk(id);
+                int[] run = run(added, i, addEnd, removed, j, removeEnd);
+                chunk.rows.set(id & CHUNK_MASK, change(row(chunk, id), run, (addEnd - i) - (removeEnd - j)));
+                i = addEnd;
+                j = removeEnd;
+            }
+            edgeCount.addAndGet((added.length - removed.length) / 2);
+            changed();
+        } finally {
+            changeLock.readLock().unlock();
+        }
+    }
+
+    private long[] directions(long[] edges, boolean adding) {
+        long[] directions = new long[edges.length * 2];
+        int count = 0;
+        for (long edge : edges) {
+            int id1 = (int) (edge >>> 32);
+            int id2 = (int) edge;
+            if (id1 == id2) {
+                throw new IllegalArgumentException("A user cannot be friends with themselves.");
+            }
+            if (connected(id1, id2) != adding) {
+                directions[count++] = (long) id1 << 32 | id2;
+                directions[count++] = (long) id2 << 32 | id1;
+            }
+        }
+        directions = Arrays.copyOf(directions, count);
+        Arrays.sort(directions);
+        return directions;
+    }
+
+    // End of the run of directions from position on that belong to id's row
+    private static int rowEnd(long[] directions, int position, int id) {
+        while (position < directions.length && (int) (directions[position] >>> 32) == id) {
+            position++;
+        }
+        return position;
+    }
+
+    // One row's changes as a HubRow run: added friends, and ~friend for removed ones
+    private static int[] run(long[] added, int addFrom, int addTo, long[] removed, int removeFrom, int removeTo) {
+        int[] run = new int[(addTo - addFrom) + (removeTo - removeFrom)];
+        int a = addFrom;
+        int r = removeFrom;
+        for (int k = 0; k < run.length; k++) {
+            if (r == removeTo || (a < addTo && (int) added[a] < (int) removed[r])) {
+                run[k] = (int) added[a++];
+            } else {
+                run[k] = ~(int) removed[r++];
+            }
+        }
+        return run;
+    }
+
+    private void checkWritable() {
+        if (live != null) {
+            throw new UnsupportedOperationException("A pinned version cannot be modified.");
+        }
+    }
+
+    // The chunk holding the id, copied first if a pinned version may see it.
+    // Caller holds the read side of changeLock.
+    private Chunk writableChunk(int id) {
+        int index = id >>> CHUNK_BITS;
+        Chunk chunk = chunks.get(index);
+        if (chunk.epoch > newestPinned) {
+            return chunk;
+        }
+        synchronized (registrationLock) {
+            AtomicReferenceArray<Chunk> current = chunks;
+            chunk = current.get(index);
+            if (chunk.epoch <= newestPinned) {
+                chunk = new Chunk(chunk, epoch);
+                current.set(index, chunk);
+            }
+            return chunk;
+        }
+    }
+
+    // Lets pin() know the newest version is out of date; read first so
+    // steady writes do not keep dirtying the field
+    private void changed() {
+        if (!changedSincePin) {
+            changedSincePin = true;
+        }
+    }
+
+    // The row after the changes in run, which leave it with delta more
+    // friends; a row that crosses HUB_DEGREE changes representation
+    private static Object change(Object row, int[] run, int delta) {
+        if (row instanceof HubRow) {
+            HubRow hub = ((HubRow) row).with(run, delta);
+            return hub.degree < HUB_DEGREE / 2 ? hub.flat() : hub;
+        }
+        int[] flat = (int[]) row;
+        if (flat.length + delta < HUB_DEGREE) {
+            return HubRow.merge(flat, run, true);
+        }
+        return new HubRow(new int[][] {flat}, flat.length).with(run, delta);
+    }
+
+    private static int[] flat(Object row) {
+        return row instanceof HubRow ? ((HubRow) row).flat() : (int[]) row;
+    }
+
+    private static int degree(Object row) {
+        return row instanceof HubRow ? ((HubRow) row).degree : ((int[]) row).length;
+    }
+
+    private static boolean contains(Object row, int friend) {
+        return row instanceof HubRow ? ((HubRow) row).contains(friend) : Arrays.binarySearch((int[]) row, friend) >= 0;
+    }
+
+    // Friend list of a user with HUB_DEGREE or more friends. Copying it for
+    // every change would make building a hub one friend at a time quadratic,
+    // and changing it in place would change it under pinned versions and
+    // lock-free readers. So changes are added as small immutable runs on top:
+    // runs are sorted by friend id and ordered oldest first, and a new run is
+    // merged into the one below while it is at least half that size. There
+    // are O(log degree) runs, and an entry is copied O(log degree) times in
+    // all. A run holds friend ids, and ~id where a friend was removed, which
+    // cancels the entry in an older run. The sorted array neighbors() returns
+    // is built on first use and kept, and later changes start from it.
+    private static final class HubRow {
+        // runs[0] never holds removals: there is nothing older for them to cancel
+        final int[][] runs;
+        final int degree;
+        private volatile int[] flat;
+
+        HubRow(int[][] runs, int degree) {
+            this.runs = runs;
+            this.degree = degree;
+            if (runs.length == 1) {
+                flat = runs[0];
+            }
+        }
+
+        boolean contains(int friend) {
+            // The newest run that mentions the friend decides
+            for (int i = runs.length - 1; i >= 0; i--) {
+                int position = search(runs[i], friend);
+                if (position >= 0) {
+                    return runs[i][position] >= 0;
+                }
+            }
+            return false;
+        }
+
+        HubRow with(int[] run, int delta) {
+            int[] sorted = flat;
+            int[][] next = sorted != null ? new int[][] {sorted, run} : Arrays.copyOf(runs, runs.length + 1);
+            int count = next.length;
+            if (sorted == null) {
+                next[count - 1] = run;
+            }
+            while (count > 1 && next[count - 1].length * 2 >= next[count - 2].length) {
+                next[count - 2] = merge(next[count - 2], next[count - 1], count == 2);
+                count--;
+            }
+            return new HubRow(count == next.length ? next : Arrays.copyOf(next, count), degree + delta);
+        }
+
+        int[] flat() {
+            int[] sorted = flat;
+            if (sorted == null) {
+                sorted = runs[runs.length - 1];
+                for (int i = runs.length - 2; i >= 0; i--) {
+                    sorted = merge(runs[i], sorted, i == 0);
+                }
+                flat = sorted;
+            }
+            return sorted;
+        }
+
+        // Both runs in friend order. The newer entry wins where both have the
+        // friend, and at the bottom removals are dropped once they have
+        // cancelled their entry.
+        static int[] merge(int[] older, int[] newer, boolean bottom) {
+            int[] merged = new int[older.length + newer.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < older.length || j < newer.length) {
+                int entry;
+                if (j == newer.length || (i < older.length && friend(older[i]) < friend(newer[j]))) {
+                    entry = older[i++];
+                } else {
+                    if (i < older.length && friend(older[i]) == friend(newer[j])) {
+                        i++;
+                    }
+                    entry = newer[j++];
+                }
+                if (entry >= 0 || !bottom) {
+                    merged[k++] = entry;
+                }
+            }
+            return k == merged.length ? merged : k == 0 ? NO_FRIENDS : Arrays.copyOf(merged, k);
+        }
+
+        private static int friend(int entry) {
+            return entry >= 0 ? entry : ~entry;
+        }
+
+        private static int search(int[] run, int friend) {
+            int low = 0;
+            int high = run.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midFriend = friend(run[mid]);
+                if (midFriend < friend) {
+                    low = mid + 1;
+                } else if (midFriend > friend) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Only appends chunks; existing chunks are shared with the old array.
+    // Callers hold registrationLock or own the graph alone.
+    private void ensureCapacity(int capacity) {
+        int needed = (capacity + CHUNK_SIZE - 1) >>> CHUNK_BITS;
+        AtomicReferenceArray<Chunk> current = chunks;
+        if (needed <= current.length()) {
+            return;
+        }
+        AtomicReferenceArray<Chunk> grown = new AtomicReferenceArray<>(Math.max(needed, current.length() + (current.length() >> 1)));
+        for (int i = 0; i < grown.length(); i++) {
+            grown.set(i, i < current.length() ? current.get(i) : new Chunk(epoch));
+        }
+        chunks = grown;
+    }
+}
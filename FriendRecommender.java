@@ -0,0 +1,167 @@
+package socialMediaPlatform;
+
+import java.util.*;
+
+// Friends-of-friends recommender. Mutual counts are accumulated in a reusable
+// per-thread int[] indexed by user id, and only the best K candidates are kept
+// in a bounded heap, so a hub with hundreds of thousands of candidates costs
+// O(candidates * log K) with no per-candidate allocation.
+//
+// Ranking: more mutual friends first, then higher degree, then username.
+final class FriendRecommender {
+
+    static final int DEFAULT_LIMIT = 10;
+
+    // Marks the user and their current friends so they are never scored
+    private static final int EXCLUDED = -1;
+
+    // Scratch space reused by every call on the same thread
+    private static final class Scratch {
+        int[] scores = new int[0];
+        int[] touched = new int[64];
+        int touchedCount;
+        int[] heap = new int[DEFAULT_LIMIT];
+
+        void touch(int id) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = id;
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+            }
+            touchedCount = 0;
+        }
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private FriendRecommender() {
+    }
+
+    // Best suggestions first
+    static List<FriendSuggestion> suggest(FriendGraph graph, int userId, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        Scratch scratch = SCRATCH.get();
+        int userCount = graph.size();
+        if (scratch.scores.length < userCount) {
+            scratch.scores = Arrays.copyOf(scratch.scores, Math.max(userCount, scratch.scores.length * 2));
+        }
+        if (scratch.heap.length < limit) {
+            scratch.heap = new int[limit];
+        }
+        int[] scores = scratch.scores;
+
+        try {
+            int[] friends = graph.neighbors(userId);
+            scores[userId] = EXCLUDED;
+            scratch.touch(userId);
+            for (int friend : friends) {
+                if (friend < scores.length) {
+                    scores[friend] = EXCLUDED;
+                    scratch.touch(friend);
+                }
+            }
+
+            for (int friend : friends) {
+                for (int candidate : graph.neighbors(friend)) {
+                    // Users registered after the scratch array was sized are skipped
+                    if (candidate >= scores.length) {
+                        continue;
+                    }
+                    int score = scores[candidate];
+                    if (score == EXCLUDED) {
+                        continue;
+                    }
+                    if (score == 0) {
+                        scratch.touch(candidate);
+                    }
+                    scores[candidate] = score + 1;
+                }
+            }
+
+            int[] heap = scratch.heap;
+            int heapSize = 0;
+            for (int i = 0; i < scratch.touchedCount; i++) {
+                int candidate = scratch.touched[i];
+                if (scores[candidate] <= 0) {
+                    continue;
+                }
+                if (heapSize < limit) {
+                    heap[heapSize] = candidate;
+                    siftUp(graph, scores, heap, heapSize++);
+                } else if (compare(graph, scores, candidate, heap[0]) > 0) {
+                    heap[0] = candidate;
+                    siftDown(graph, scores, heap, heapSize);
+                }
+            }
+
+            // Pop the worst repeatedly to fill the result from the back
+            FriendSuggestion[] ordered = new FriendSuggestion[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                int worst = heap[0];
+                ordered[i] = new FriendSuggestion(graph.user(worst), scores[worst]);
+                heap[0] = heap[--heapSize];
+                siftDown(graph, scores, heap, heapSize);
+            }
+            return Arrays.asList(ordered);
+        } finally {
+            scratch.reset();
+        }
+    }
+
+    // Positive when a ranks above b
+    private static int compare(FriendGraph graph, int[] scores, int a, int b) {
+        if (scores[a] != scores[b]) {
+            return Integer.compare(scores[a], scores[b]);
+        }
+        int degreeA = graph.degree(a);
+        int degreeB = graph.degree(b);
+        if (degreeA != degreeB) {
+            return Integer.compare(degreeA, degreeB);
+        }
+        return graph.username(b).compareTo(graph.username(a));
+    }
+
+    // Min-heap on rank: the root is the weakest suggestion kept so far
+    private static void siftUp(FriendGraph graph, int[] scores, int[] heap, int index) {
+        int value = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(graph, scores, value, heap[parent]) >= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = value;
+    }
+
+    private static void siftDown(FriendGraph graph, int[] scores, int[] heap, int size) {
+        if (size == 0) {
+            return;
+        }
+        int index = 0;
+        int value = heap[0];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && compare(graph, scores, heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compare(graph, scores, heap[child], value) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = value;
+    }
+}
@@ -0,0 +1,25 @@
+package socialMediaPlatform;
+
+// A recommended user and the number of friends they share with the requester
+final class FriendSuggestion {
+    private final UserDirectory user;
+    private final int mutualFriends;
+
+    FriendSuggestion(UserDirectory user, int mutualFriends) {
+        this.user = user;
+        this.mutualFriends = mutualFriends;
+    }
+
+    public UserDirectory getUser() {
+        return user;
+    }
+
+    public int getMutualFriends() {
+        return mutualFriends;
+    }
+
+    @Override
+    public String toString() {
+        return user.getName() + " (" + user.getUsername() + ", " + mutualFriends + " mutual)";
+    }
+}
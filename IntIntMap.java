@@ -0,0 +1,80 @@
+package socialMediaPlatform;
+
+import java.util.Arrays;
+
+// Open-addressing map from non-negative int keys to int values, stored in
+// two flat arrays with linear probing. Used where a search touches only a few
+// thousand ids out of millions, so an id-indexed array would be mostly empty.
+final class IntIntMap {
+
+    static final int MISSING = -1;
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    IntIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // MISSING when the key is absent
+    int get(int key) {
+        int index = slot(key);
+        return keys[index] == key ? values[index] : MISSING;
+    }
+
+    // Stores the value only if the key is new; returns whether it was
+    boolean putIfAbsent(int key, int value) {
+        int index = slot(key);
+        if (keys[index] == key) {
+            return false;
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return true;
+    }
+
+    // Slot holding the key, or the free slot where it would go
+    private int slot(int key) {
+        int index = mix(key) & mask;
+        while (keys[index] != FREE && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, FREE);
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int index = slot(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
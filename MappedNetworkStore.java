@@ -0,0 +1,296 @@
+package socialMediaPlatform;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Read-through view of a NetworkSnapshot file that is memory-mapped instead of
+// read up front. Opening only maps the file and reads the header; snapshot ids
+// are reserved in a FriendGraph, a user is turned into a UserDirectory the
+// first time it is looked up, and a friend row is only decoded when the graph
+// first asks for it. Users added after opening live in an in-memory overlay.
+// Lookups are lock-free: the mapping is read-only and the overlay is concurrent.
+// Closing drops the mapping; the graph must have been replaced by then.
+class MappedNetworkStore extends AbstractMap<String, UserDirectory> implements FriendGraph.Source, Closeable {
+
+    // Each mapping overlaps the next by a few bytes so an int or long never straddles two
+    private static final long REGION_BYTES = 1L << 30;
+    private static final int REGION_OVERLAP = 8;
+
+    private final Path file;
+    // Null once closed
+    private volatile MappedByteBuffer[] regions;
+    private final NetworkSnapshot.Header header;
+    private final FriendGraph graph;
+    private final Map<String, UserDirectory> added = new ConcurrentHashMap<>();
+    private final AtomicInteger materializedCount = new AtomicInteger();
+    private EntrySet entrySet;
+
+    private MappedNetworkStore(Path file, MappedByteBuffer[] regions) throws IOException {
+        this.file = file;
+        this.regions = regions;
+        ByteBuffer headerBytes = regions[0].duplicate();
+        if (headerBytes.limit() < NetworkSnapshot.HEADER_BYTES) {
+            throw new IOException("Snapshot is truncated.");
+        }
+        this.header = NetworkSnapshot.Header.read(headerBytes);
+        this.graph = new FriendGraph(header.userCount);
+        graph.reserve(header.userCount, this, header.edgeEntries / 2);
+    }
+
+    static MappedNetworkStore open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int regionCount = (int) Math.max(1, (size + REGION_BYTES - 1) / REGION_BYTES);
+            MappedByteBuffer[] regions = new MappedByteBuffer[regionCount];
+            for (int i = 0; i < regionCount; i++) {
+                long start = i * REGION_BYTES;
+                long length = Math.min(size - start, REGION_BYTES + REGION_OVERLAP);
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            MappedNetworkStore store = new MappedNetworkStore(file, regions);
+            if (store.header.fileLength != size) {
+                throw new IOException("Snapshot is truncated.");
+            }
+            return store;
+        }
+    }
+
+    long sequence() {
+        return header.sequence;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    FriendGraph graph() {
+        return graph;
+    }
+
+    // Number of snapshot users turned into objects so far
+    int materializedCount() {
+        return materializedCount.get();
+    }
+
+    @Override
+    public UserDirectory get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        UserDirectory user = added.get(key);
+        if (user != null) {
+            return user;
+        }
+        int id = find((String) key);
+        return id < 0 ? null : graph.user(id);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public synchronized UserDirectory put(String key, UserDirectory value) {
+        if (find(key) >= 0) {
+            throw new UnsupportedOperationException("Users from the snapshot cannot be replaced.");
+        }
+        return added.put(key, value);
+    }
+
+    @Override
+    public int size() {
+        return header.userCount + added.size();
+    }
+
+    @Override
+    public Set<Entry<String, UserDirectory>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    // Binary search over the username-ordered user table
+    private int find(String username) {
+        int low = 0;
+        int high = header.userCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = string(getInt(userRecord(mid))).compareTo(username);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public UserDirectory loadUser(int id) {
+        UserDirectory user = new UserDirectory(loadUsername(id), loadName(id));
+        user.restoreCounts(loadFollowerCount(id), loadFollowingCount(id));
+        String[] texts = loadPostTexts(id);
+        long[] times = loadPostTimes(id);
+        for (int p = 0; p < texts.length; p++) {
+            user.restorePost(texts[p], times[p]);
+        }
+        materializedCount.incrementAndGet();
+        return user;
+    }
+
+    // Snapshot ids double as graph ids, so the stored row is already sorted
+    @Override
+    public int[] loadNeighbors(int id) {
+        long edgeIndex = header.adjacencyOffset + 4L * id;
+        int first = getInt(edgeIndex);
+        int end = getInt(edgeIndex + 4);
+        long targets = header.adjacencyOffset + 4L * (header.userCount + 1);
+        int[] row = new int[end - first];
+        for (int e = 0; e < row.length; e++) {
+            row[e] = getInt(targets + 4L * (first + e));
+        }
+        return row;
+    }
+
+    @Override
+    public int loadDegree(int id) {
+        long edgeIndex = header.adjacencyOffset + 4L * id;
+        return getInt(edgeIndex + 4) - getInt(edgeIndex);
+    }
+
+    @Override
+    public String loadUsername(int id) {
+        return string(getInt(userRecord(id)));
+    }
+
+    @Override
+    public String loadName(int id) {
+        return string(getInt(userRecord(id) + 4));
+    }
+
+    @Override
+    public int loadFollowerCount(int id) {
+        return getInt(userRecord(id) + 8);
+    }
+
+    @Override
+    public int loadFollowingCount(int id) {
+        return getInt(userRecord(id) + 12);
+    }
+
+    @Override
+    public String[] loadPostTexts(int id) {
+        long postIndex = header.postsOffset + 4L * id;
+        int first = getInt(postIndex);
+        long postIds = header.postsOffset + 4L * (header.userCount + 1);
+        String[] texts = new String[getInt(postIndex + 4) - first];
+        for (int p = 0; p < texts.length; p++) {
+            texts[p] = string(getInt(postIds + 4L * (first + p)));
+        }
+        return texts;
+    }
+
+    // Version 1 snapshots have no times; their posts read back as time 0
+    @Override
+    public long[] loadPostTimes(int id) {
+        long postIndex = header.postsOffset + 4L * id;
+        int first = getInt(postIndex);
+        long[] times = new long[getInt(postIndex + 4) - first];
+        if (header.postTimesOffset != 0) {
+            for (int p = 0; p < times.length; p++) {
+                times[p] = getLong(header.postTimesOffset + 8L * (first + p));
+            }
+        }
+        return times;
+    }
+
+    // Unmaps the file once the collector frees the buffers and empties the
+    // overlay; every read afterwards fails
+    @Override
+    public void close() {
+        regions = null;
+        added.clear();
+    }
+
+    private long userRecord(int id) {
+        return header.usersOffset + 4L * NetworkSnapshot.USER_RECORD_INTS * id;
+    }
+
+    private String string(int stringId) {
+        long offsetIndex = header.stringsOffset + 4L * stringId;
+        int start = getInt(offsetIndex);
+        int end = getInt(offsetIndex + 4);
+        byte[] bytes = new byte[end - start];
+        long position = header.blobOffset + start;
+        int offset = (int) (position % REGION_BYTES);
+        if (offset + bytes.length <= REGION_BYTES) {
+            region(position).get(offset, bytes);
+        } else {
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = getByte(position + i);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int getInt(long position) {
+        return region(position).getInt((int) (position % REGION_BYTES));
+    }
+
+    private long getLong(long position) {
+        return region(position).getLong((int) (position % REGION_BYTES));
+    }
+
+    private byte getByte(long position) {
+        return region(position).get((int) (position % REGION_BYTES));
+    }
+
+    private MappedByteBuffer region(long position) {
+        MappedByteBuffer[] current = regions;
+        if (current == null) {
+            throw new IllegalStateException("Snapshot store is closed.");
+        }
+        return current[(int) (position / REGION_BYTES)];
+    }
+
+    // Snapshot users in username order, then users added since opening
+    private final class EntrySet extends AbstractSet<Entry<String, UserDirectory>> {
+        @Override
+        public int size() {
+            return MappedNetworkStore.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, UserDirectory>> iterator() {
+            Iterator<Entry<String, UserDirectory>> overlay = new ArrayList<>(added.entrySet()).iterator();
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < header.userCount || overlay.hasNext();
+                }
+
+                @Override
+                public Entry<String, UserDirectory> next() {
+                    if (next < header.userCount) {
+                        UserDirectory user = graph.user(next++);
+                        return new SimpleImmutableEntry<>(user.getUsername(), user);
+                    }
+                    return overlay.next();
+                }
+            };
+        }
+    }
+}
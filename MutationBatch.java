@@ -0,0 +1,156 @@
+package socialMediaPlatform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A group of mutations applied all together or not at all, built with
+// SocialNetwork.batch(). Every operation is checked against the network and
+// the operations before it; if any would fail, none is applied. Otherwise
+// they are applied under one lock and written to the mutation log as a
+// single record, so a crash keeps either the whole batch or none of it.
+final class MutationBatch {
+
+    enum Status {
+        APPLIED,
+        NOT_APPLIED,        // valid, but another operation in the batch failed
+        USER_EXISTS,
+        USER_NOT_FOUND,
+        SELF_FRIENDSHIP,
+        ALREADY_FRIENDS,
+        NOT_FRIENDS,
+        EMPTY_POST
+    }
+
+    // One operation; first is always a username, second is a name, username or post
+    static final class Operation {
+        final MutationLog.Type type;
+        final String first;
+        final String second;
+
+        private Operation(MutationLog.Type type, String first, String second) {
+            this.type = type;
+            this.first = first;
+            this.second = second;
+        }
+
+        public MutationLog.Type getType() {
+            return type;
+        }
+
+        public String getFirst() {
+            return first;
+        }
+
+        public String getSecond() {
+            return second;
+        }
+
+        @Override
+        public String toString() {
+            return type + "(" + first + ", " + second + ")";
+        }
+    }
+
+    // Statuses line up with the operations in the order they were added
+    static final class Result {
+        private final List<Operation> operations;
+        private final List<Status> statuses;
+        private final boolean applied;
+
+        Result(List<Operation> operations, List<Status> statuses, boolean applied) {
+            this.operations = operations;
+            this.statuses = statuses;
+            this.applied = applied;
+        }
+
+        public boolean isApplied() {
+            return applied;
+        }
+
+        public List<Operation> getOperations() {
+            return operations;
+        }
+
+        public List<Status> getStatuses() {
+            return statuses;
+        }
+
+        public Status getStatus(int index) {
+            return statuses.get(index);
+        }
+
+        // Index of the first operation that stopped the batch, or -1
+        public int firstFailure() {
+            for (int i = 0; i < statuses.size(); i++) {
+                Status status = statuses.get(i);
+                if (status != Status.APPLIED && status != Status.NOT_APPLIED) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            if (applied) {
+                return "Applied " + operations.size() + " changes.";
+            }
+            int failure = firstFailure();
+            return failure < 0 ? "Nothing to apply."
+                    : "Batch rejected: " + operations.get(failure) + " -> " + statuses.get(failure);
+        }
+    }
+
+    private final SocialNetwork network;
+    private final List<Operation> operations = new ArrayList<>();
+    // Upper bound of the batch's mutation log record, at 3 UTF-8 bytes per char
+    private long logBytes;
+
+    MutationBatch(SocialNetwork network) {
+        this.network = network;
+    }
+
+    public MutationBatch addUser(String username, String name) {
+        return add(MutationLog.Type.ADD_USER, username, name);
+    }
+
+    public MutationBatch addFriend(String username1, String username2) {
+        return add(MutationLog.Type.ADD_FRIEND, username1, username2);
+    }
+
+    public MutationBatch removeFriend(String username1, String username2) {
+        return add(MutationLog.Type.REMOVE_FRIEND, username1, username2);
+    }
+
+    public MutationBatch addPost(String username, String post) {
+        return add(MutationLog.Type.ADD_TIMED_POST, username, post);
+    }
+
+    private MutationBatch add(MutationLog.Type type, String first, String second) {
+        if (first == null || second == null) {
+            throw new IllegalArgumentException("Batch operations need both values.");
+        }
+        operations.add(new Operation(type, first, second));
+        logBytes += MutationLog.BATCH_ENTRY_BYTES + 3L * (first.length() + second.length());
+        return this;
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    long logBytes() {
+        return logBytes;
+    }
+
+    List<Operation> operations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    // Validates and applies the batch; it can be applied again afterwards,
+    // e.g. after fixing a rejected operation
+    public Result apply() {
+        return network.applyBatch(this);
+    }
+}
@@ -0,0 +1,493 @@
+package socialMediaPlatform;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only log of network mutations. Each record is framed as
+// [length][crc32][type][sequence][first string][second string] so a torn
+// tail left by a crash can be detected and cut off on replay. Timestamped
+// types carry a trailing [timestamp] long. A batch is one record,
+// [type][sequence][count] followed by [type][first][second][timestamp?] per
+// entry, so it is replayed whole or not at all.
+class MutationLog implements Closeable {
+
+    // Stored by ordinal: only ever append new types
+    enum Type {
+        ADD_USER, ADD_FRIEND, REMOVE_FRIEND,
+        ADD_POST,       // untimed post written by older versions
+        ADD_TIMED_POST,
+        BATCH;
+
+        boolean timestamped() {
+            return this == ADD_TIMED_POST;
+        }
+    }
+
+    // How appends are made durable
+    enum SyncMode {
+        PER_OPERATION,  // write and fsync before append() returns
+        GROUP_COMMIT,   // append() waits for the next batched fsync
+        ASYNC           // append() returns at once, fsync happens in the background
+    }
+
+    static final class Entry {
+        final Type type;
+        final long sequence;
+        final String first;
+        final String second;
+        final long timestamp;
+
+        Entry(Type type, long sequence, String first, String second, long timestamp) {
+            this.type = type;
+            this.sequence = sequence;
+            this.first = first;
+            this.second = second;
+            this.timestamp = timestamp;
+        }
+    }
+
+    // Bytes a batch entry takes besides its strings
+    static final int BATCH_ENTRY_BYTES = 1 + 4 + 4 + 8;
+    static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+    private static final int HEADER_BYTES = 4 + 4;
+    private static final int FLUSH_THRESHOLD = 1024 * 1024;
+
+    private final Path path;
+    private final SyncMode syncMode;
+    private final long groupCommitMillis;
+    private final Object lock = new Object();
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private long lastSequence;
+    private long writtenSequence;
+    private long syncedSequence;
+    private int recordCount;
+    private int lastRecordBytes;
+    private List<Entry> lastBatch;
+    private IOException failure;
+    private Thread flusher;
+    private boolean closed;
+
+    MutationLog(Path path, SyncMode syncMode, long groupCommitMillis) {
+        this.path = path;
+        this.syncMode = syncMode;
+        this.groupCommitMillis = Math.max(1, groupCommitMillis);
+    }
+
+    // Replays every record newer than the snapshot, cuts off a torn tail and
+    // opens the log for appending. Returns the number of records applied.
+    int open(long snapshotSequence, Consumer<Entry> replay) throws IOException {
+        synchronized (lock) {
+            lastSequence = snapshotSequence;
+            int applied = 0;
+            long validBytes = 0;
+
+            if (Files.exists(path)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                    while (true) {
+                        Entry entry = readRecord(in);
+                        if (entry == null) {
+                            break;
+                        }
+                        validBytes += lastRecordBytes;
+                        recordCount += entry.type == Type.BATCH ? lastBatch.size() : 1;
+                        if (entry.sequence > lastSequence) {
+                            if (entry.type == Type.BATCH) {
+                                for (Entry batched : lastBatch) {
+                                    replay.accept(batched);
+                                }
+                                applied += lastBatch.size();
+                            } else {
+                                replay.accept(entry);
+                                applied++;
+                            }
+                            lastSequence = entry.sequence;
+                        }
+                    }
+                }
+            }
+
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.size() > validBytes) {
+                NetworkLog.warn("Discarding torn tail of mutation log at byte " + validBytes + ".");
+                channel.truncate(validBytes);
+            }
+            channel.position(validBytes);
+            writtenSequence = lastSequence;
+            syncedSequence = lastSequence;
+
+            if (syncMode != SyncMode.PER_OPERATION) {
+                flusher = new Thread(this::flushLoop, "mutation-log-flusher");
+                flusher.setDaemon(true);
+                flusher.start();
+            }
+            return applied;
+        }
+    }
+
+    // Appends a record and returns its sequence number. Records are numbered
+    // and written in append order, but the record is only as durable as the
+    // sync mode promises after awaitDurable(sequence), which callers make
+    // once their own locks are released so other writers are not held up.
+    long append(Type type, String first, String second) throws IOException {
+        return append(type, first, second, 0);
+    }
+
+    long append(Type type, String first, String second, long timestamp) throws IOException {
+        // Replay would take a longer record for a torn tail and drop it with
+        // everything after it, so callers check recordBytes() before applying
+        if (recordBytes(type, first, second) > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Change is too large to log as one record.");
+        }
+        synchronized (lock) {
+            ensureWritable();
+            long sequence = ++lastSequence;
+            encode(type, sequence, first, second, timestamp);
+            recordCount++;
+            flushIfFull();
+            return sequence;
+        }
+    }
+
+    // Appends the entries as one record under one sequence number; their own
+    // sequence numbers are ignored. Each entry counts towards compaction.
+    // Durable after awaitDurable(), as for append().
+    long appendBatch(List<Entry> entries) throws IOException {
+        synchronized (lock) {
+            ensureWritable();
+            long sequence = ++lastSequence;
+            encodeBatch(sequence, entries);
+            recordCount += entries.size();
+            flushIfFull();
+            return sequence;
+        }
+    }
+
+    // Caller must hold the lock
+    private void flushIfFull() throws IOException {
+        if (pending.position() >= FLUSH_THRESHOLD) {
+            flushPending(false);
+        }
+    }
+
+    // Returns once the record with this sequence number is as durable as the
+    // sync mode promises. Per-operation mode forces it here, so one fsync also
+    // covers records other threads appended meanwhile.
+    void awaitDurable(long sequence) throws IOException {
+        synchronized (lock) {
+            if (syncMode == SyncMode.PER_OPERATION) {
+                if (syncedSequence < sequence) {
+                    ensureWritable();
+                    flushPending(true);
+                }
+            } else if (syncMode == SyncMode.GROUP_COMMIT) {
+                while (syncedSequence < sequence && failure == null && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for group commit.");
+                    }
+                }
+                if (syncedSequence < sequence) {
+                    ensureWritable();
+                }
+            }
+        }
+    }
+
+    // Forces everything appended so far to disk
+    void sync() throws IOException {
+        synchronized (lock) {
+            ensureWritable();
+            flushPending(true);
+        }
+    }
+
+    // Empties the log after its contents have been folded into a snapshot
+    void reset() throws IOException {
+        synchronized (lock) {
+            ensureWritable();
+            flushPending(true);
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            recordCount = 0;
+        }
+    }
+
+    long lastSequence() {
+        synchronized (lock) {
+            return lastSequence;
+        }
+    }
+
+    int recordCount() {
+        synchronized (lock) {
+            return recordCount;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Thread flusherThread;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                if (channel != null && failure == null) {
+                    flushPending(true);
+                }
+            } finally {
+                closed = true;
+                lock.notifyAll();
+                flusherThread = flusher;
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        }
+        if (flusherThread != null) {
+            flusherThread.interrupt();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            try {
+                Thread.sleep(groupCommitMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (lock) {
+                if (closed) {
+                    return;
+                }
+                if (writtenSequence == lastSequence && syncedSequence == lastSequence) {
+                    continue;
+                }
+                try {
+                    flushPending(true);
+                } catch (IOException e) {
+                    failure = e;
+                    lock.notifyAll();
+                    NetworkLog.error("Error syncing mutation log: " + e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    // Caller must hold the lock
+    private void flushPending(boolean force) throws IOException {
+        pending.flip();
+        while (pending.hasRemaining()) {
+            channel.write(pending);
+        }
+        pending.clear();
+        writtenSequence = lastSequence;
+        if (force) {
+            channel.force(false);
+            syncedSequence = writtenSequence;
+            lock.notifyAll();
+        }
+    }
+
+    private void ensureWritable() throws IOException {
+        if (closed || channel == null) {
+            throw new IOException("Mutation log is not open.");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void encode(Type type, long sequence, String first, String second, long timestamp) {
+        byte[] firstBytes = first.getBytes(StandardCharsets.UTF_8);
+        byte[] secondBytes = second.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 8 + fieldBytes(type, firstBytes, secondBytes);
+
+        int start = beginRecord(length);
+        pending.put((byte) type.ordinal());
+        pending.putLong(sequence);
+        putFields(type, firstBytes, secondBytes, timestamp);
+        endRecord(start, length);
+    }
+
+    private void encodeBatch(long sequence, List<Entry> entries) {
+        byte[][] strings = new byte[2 * entries.size()][];
+        int length = 1 + 8 + 4;
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            strings[2 * i] = entry.first.getBytes(StandardCharsets.UTF_8);
+            strings[2 * i + 1] = entry.second.getBytes(StandardCharsets.UTF_8);
+            length += 1 + fieldBytes(entry.type, strings[2 * i], strings[2 * i + 1]);
+        }
+
+        int start = beginRecord(length);
+        pending.put((byte) Type.BATCH.ordinal());
+        pending.putLong(sequence);
+        pending.putInt(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            pending.put((byte) entry.type.ordinal());
+            putFields(entry.type, strings[2 * i], strings[2 * i + 1], entry.timestamp);
+        }
+        endRecord(start, length);
+    }
+
+    // Length of the record append() would write for these fields
+    static long recordBytes(Type type, String first, String second) {
+        return 1 + 8 + 4 + utf8Length(first) + 4 + utf8Length(second) + (type.timestamped() ? 8 : 0);
+    }
+
+    private static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int fieldBytes(Type type, byte[] firstBytes, byte[] secondBytes) {
+        return 4 + firstBytes.length + 4 + secondBytes.length + (type.timestamped() ? 8 : 0);
+    }
+
+    private void putFields(Type type, byte[] firstBytes, byte[] secondBytes, long timestamp) {
+        pending.putInt(firstBytes.length).put(firstBytes);
+        pending.putInt(secondBytes.length).put(secondBytes);
+        if (type.timestamped()) {
+            pending.putLong(timestamp);
+        }
+    }
+
+    // Makes room for a record and skips its header; returns where it starts
+    private int beginRecord(int length) {
+        if (pending.remaining() < HEADER_BYTES + length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + HEADER_BYTES + length));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.position(start + HEADER_BYTES);
+        return start;
+    }
+
+    private void endRecord(int start, int length) {
+        crc.reset();
+        crc.update(pending.array(), start + HEADER_BYTES, length);
+        pending.putInt(start, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+    }
+
+    // Returns null at end of file or at the first damaged record. The entries
+    // of a batch record are left in lastBatch.
+    private Entry readRecord(DataInputStream in) throws IOException {
+        int length;
+        int checksum;
+        byte[] body;
+        try {
+            length = in.readInt();
+            checksum = in.readInt();
+            if (length < 1 + 8 + 8 || length > MAX_RECORD_BYTES) {
+                return null;
+            }
+            body = new byte[length];
+            in.readFully(body);
+        } catch (EOFException e) {
+            return null;
+        }
+
+        crc.reset();
+        crc.update(body, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        lastRecordBytes = HEADER_BYTES + length;
+
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        Type type = readType(buffer);
+        if (type == null) {
+            return null;
+        }
+        long sequence = buffer.getLong();
+        if (type != Type.BATCH) {
+            return readFields(buffer, type, sequence);
+        }
+
+        int count = buffer.remaining() < 4 ? -1 : buffer.getInt();
+        if (count < 1 || count > buffer.remaining() / (1 + 4 + 4)) {
+            return null;
+        }
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Type entryType = buffer.hasRemaining() ? readType(buffer) : null;
+            Entry entry = entryType == null || entryType == Type.BATCH ? null : readFields(buffer, entryType, sequence);
+            if (entry == null) {
+                return null;
+            }
+            entries.add(entry);
+        }
+        lastBatch = entries;
+        return new Entry(Type.BATCH, sequence, "", "", 0);
+    }
+
+    private static Type readType(ByteBuffer buffer) {
+        int typeIndex = buffer.get();
+        if (typeIndex < 0 || typeIndex >= Type.values().length) {
+            return null;
+        }
+        return Type.values()[typeIndex];
+    }
+
+    private static Entry readFields(ByteBuffer buffer, Type type, long sequence) {
+        String first = readString(buffer);
+        String second = first == null ? null : readString(buffer);
+        if (second == null) {
+            return null;
+        }
+        long timestamp = 0;
+        if (type.timestamped()) {
+            if (buffer.remaining() < 8) {
+                return null;
+            }
+            timestamp = buffer.getLong();
+        }
+        return new Entry(type, sequence, first, second, timestamp);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,106 @@
+package socialMediaPlatform;
+
+import java.util.Arrays;
+
+// Intersection of two sorted friend-id rows. Rows of similar length are merged
+// in one linear pass; when one row is much longer, each id of the short row is
+// located in the long one by galloping (exponential then binary search)
+// forward from the previous match, so the cost is O(short * log(long / short))
+// instead of O(short + long).
+final class NeighborIntersection {
+
+    // Length ratio above which galloping beats a linear merge
+    private static final int GALLOP_RATIO = 16;
+
+    private NeighborIntersection() {
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int count = intersect(a, b, out);
+        return count == out.length ? out : Arrays.copyOf(out, count);
+    }
+
+    // Number of common ids, without allocating
+    static int count(int[] a, int[] b) {
+        return intersect(a, b, null);
+    }
+
+    // Writes the common ids to out when it is not null; returns how many there are
+    private static int intersect(int[] a, int[] b, int[] out) {
+        if (a.length > b.length) {
+            int[] swap = a;
+            a = b;
+            b = swap;
+        }
+        if (a.length == 0) {
+            return 0;
+        }
+        // Disjoint ranges: nothing to do
+        if (a[a.length - 1] < b[0] || b[b.length - 1] < a[0]) {
+            return 0;
+        }
+        return (long) a.length * GALLOP_RATIO < b.length ? gallop(a, b, out) : merge(a, b, out);
+    }
+
+    private static int merge(int[] a, int[] b, int[] out) {
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < a.length && j < b.length) {
+            int x = a[i];
+            int y = b[j];
+            if (x < y) {
+                i++;
+            } else if (x > y) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[count] = x;
+                }
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    // small is the shorter row
+    private static int gallop(int[] small, int[] large, int[] out) {
+        int count = 0;
+        int low = 0;
+        for (int value : small) {
+            // Double the step until we pass value, then binary search the last step
+            int step = 1;
+            int high = low;
+            while (high < large.length && large[high] < value) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            if (high >= large.length) {
+                high = large.length - 1;
+            }
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (large[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (low >= large.length) {
+                break;
+            }
+            if (large[low] == value) {
+                if (out != null) {
+                    out[count] = value;
+                }
+                count++;
+                low++;
+            }
+        }
+        return count;
+    }
+}
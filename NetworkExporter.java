@@ -0,0 +1,275 @@
+package socialMediaPlatform;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+
+// Streams a graph to a channel one user at a time. Text is encoded straight
+// into a fixed direct buffer that is written out whenever it fills, so memory
+// use does not depend on the size of the network and nothing is built up as
+// one big String. Rows that were never loaded from a mapped snapshot are read
+// for the export without being kept.
+final class NetworkExporter {
+
+    enum Format {
+        // username1<TAB>username2, each friendship once; readable by BulkImporter
+        EDGE_LIST,
+        // username<TAB>friend<TAB>friend..., one line per user
+        ADJACENCY_LIST,
+        // GraphML with a node per user (username and name) and an undirected edge per friendship
+        GRAPHML,
+        // {"username":..,"name":..,"friends":[..]} per line
+        JSON_LINES
+    }
+
+    private static final int BUFFER_BYTES = 256 * 1024;
+
+    private NetworkExporter() {
+    }
+
+    // Returns the number of bytes written
+    static long export(FriendGraph graph, Format format, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return export(graph, format, channel);
+        }
+    }
+
+    // Writes to the channel without closing it
+    static long export(FriendGraph graph, Format format, WritableByteChannel channel) throws IOException {
+        Output out = new Output(channel);
+        switch (format) {
+            case EDGE_LIST -> writeEdgeList(graph, out);
+            case ADJACENCY_LIST -> writeAdjacencyList(graph, out);
+            case GRAPHML -> writeGraphMl(graph, out);
+            case JSON_LINES -> writeJsonLines(graph, out);
+        }
+        out.flush();
+        return out.written;
+    }
+
+    // The "Name -> Friend Friend " listing printed by displayNetwork
+    static long writeConnections(FriendGraph graph, WritableByteChannel channel) throws IOException {
+        Output out = new Output(channel);
+        for (int id = 0; id < graph.size(); id++) {
+            out.text(graph.name(id), Escape.NONE);
+            out.ascii(" -> ");
+            for (int friend : graph.scanNeighbors(id)) {
+                out.text(graph.name(friend), Escape.NONE);
+                out.ascii(" ");
+            }
+            out.ascii("\n");
+        }
+        out.flush();
+        return out.written;
+    }
+
+    private static void writeEdgeList(FriendGraph graph, Output out) throws IOException {
+        for (int id = 0; id < graph.size(); id++) {
+            int[] row = graph.scanNeighbors(id);
+            String username = null;
+            for (int friend : row) {
+                // Each friendship once, from its smaller id
+                if (friend > id) {
+                    if (username == null) {
+                        username = graph.username(id);
+                    }
+                    out.text(username, Escape.COLUMN);
+                    out.ascii("\t");
+                    out.text(graph.username(friend), Escape.COLUMN);
+                    out.ascii("\n");
+                }
+            }
+        }
+    }
+
+    private static void writeAdjacencyList(FriendGraph graph, Output out) throws IOException {
+        for (int id = 0; id < graph.size(); id++) {
+            out.text(graph.username(id), Escape.COLUMN);
+            for (int friend : graph.scanNeighbors(id)) {
+                out.ascii("\t");
+                out.text(graph.username(friend), Escape.COLUMN);
+            }
+            out.ascii("\n");
+        }
+    }
+
+    // Nodes are named n<id>; GraphML allows nodes and edges in any order, so
+    // each user's edges to higher ids follow its node
+    private static void writeGraphMl(FriendGraph graph, Output out) throws IOException {
+        out.ascii("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.ascii("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">\n");
+        out.ascii("  <key id=\"username\" for=\"node\" attr.name=\"username\" attr.type=\"string\"/>\n");
+        out.ascii("  <key id=\"name\" for=\"node\" attr.name=\"name\" attr.type=\"string\"/>\n");
+        out.ascii("  <graph id=\"pathfinders\" edgedefault=\"undirected\">\n");
+        for (int id = 0; id < graph.size(); id++) {
+            out.ascii("    <node id=\"n");
+            out.number(id);
+            out.ascii("\"><data key=\"username\">");
+            out.text(graph.username(id), Escape.XML);
+            out.ascii("</data><data key=\"name\">");
+            out.text(graph.name(id), Escape.XML);
+            out.ascii("</data></node>\n");
+            for (int friend : graph.scanNeighbors(id)) {
+                if (friend > id) {
+                    out.ascii("    <edge source=\"n");
+                    out.number(id);
+                    out.ascii("\" target=\"n");
+                    out.number(friend);
+                    out.ascii("\"/>\n");
+                }
+            }
+        }
+        out.ascii("  </graph>\n");
+        out.ascii("</graphml>\n");
+    }
+
+    private static void writeJsonLines(FriendGraph graph, Output out) throws IOException {
+        for (int id = 0; id < graph.size(); id++) {
+            out.ascii("{\"username\":\"");
+            out.text(graph.username(id), Escape.JSON);
+            out.ascii("\",\"name\":\"");
+            out.text(graph.name(id), Escape.JSON);
+            out.ascii("\",\"friends\":[");
+            int[] row = graph.scanNeighbors(id);
+            for (int i = 0; i < row.length; i++) {
+                out.ascii(i == 0 ? "\"" : ",\"");
+                out.text(graph.username(row[i]), Escape.JSON);
+                out.ascii("\"");
+            }
+            out.ascii("]}\n");
+        }
+    }
+
+    private enum Escape {
+        NONE,
+        // Quoted the way BulkImporter reads it, when it holds a delimiter,
+        // quote or line break, or starts or ends with a blank
+        COLUMN,
+        XML,
+        JSON
+    }
+
+    // Fixed-size UTF-8 writer; characters are encoded one at a time, so
+    // writing allocates nothing
+    private static final class Output {
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final WritableByteChannel channel;
+        long written;
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void ascii(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                put((byte) text.charAt(i));
+            }
+        }
+
+        void number(int value) throws IOException {
+            if (value >= 10) {
+                number(value / 10);
+            }
+            put((byte) ('0' + value % 10));
+        }
+
+        void text(String text, Escape escape) throws IOException {
+            boolean quote = escape == Escape.COLUMN && needsQuotes(text);
+            if (quote) {
+                put((byte) '"');
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (escape) {
+                    case COLUMN -> {
+                        if (c == '"') {
+                            put((byte) '"');
+                        }
+                    }
+                    case XML -> {
+                        String entity = switch (c) {
+                            case '&' -> "&amp;";
+                            case '<' -> "&lt;";
+                            case '>' -> "&gt;";
+                            case '"' -> "&quot;";
+                            default -> null;
+                        };
+                        if (entity != null) {
+                            ascii(entity);
+                            continue;
+                        }
+                    }
+                    case JSON -> {
+                        if (c == '"' || c == '\\') {
+                            put((byte) '\\');
+                        } else if (c < 0x20) {
+                            ascii("\\u00");
+                            put((byte) Character.forDigit(c >> 4, 16));
+                            put((byte) Character.forDigit(c & 0xF, 16));
+                            continue;
+                        }
+                    }
+                    case NONE -> {
+                    }
+                }
+                if (c < 0x80) {
+                    put((byte) c);
+                } else if (c < 0x800) {
+                    put((byte) (0xC0 | c >> 6));
+                    put((byte) (0x80 | c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                        && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                    put((byte) (0xF0 | codePoint >> 18));
+                    put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                    put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                    put((byte) (0x80 | codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // Unpaired surrogate, as String.getBytes would write it
+                    put((byte) '?');
+                } else {
+                    put((byte) (0xE0 | c >> 12));
+                    put((byte) (0x80 | c >> 6 & 0x3F));
+                    put((byte) (0x80 | c & 0x3F));
+                }
+            }
+            if (quote) {
+                put((byte) '"');
+            }
+        }
+
+        private static boolean needsQuotes(String text) {
+            if (text.isEmpty()) {
+                return false;
+            }
+            if (text.charAt(0) <= ' ' || text.charAt(text.length() - 1) <= ' ' || text.charAt(0) == '#') {
+                return true;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\t' || c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void put(byte value) throws IOException {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put(value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package socialMediaPlatform;
+
+import java.io.PrintStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Leveled console logger. Callers only enqueue; a daemon thread writes the
+// messages, so a mutation never waits on the console. When the queue is full
+// messages are dropped and counted instead of blocking the caller. ERROR goes
+// to stderr and everything else to stdout, as the println calls it replaces
+// did. The starting level comes from -Dpathfinders.log.level (INFO by default).
+final class NetworkLog {
+
+    enum Level {
+        DEBUG,
+        INFO,
+        WARN,
+        ERROR
+    }
+
+    private static final int QUEUE_CAPACITY = 8192;
+
+    private static final class Message {
+        final Level level;
+        final String text;
+        // Set on flush markers only
+        final CountDownLatch written;
+
+        Message(Level level, String text, CountDownLatch written) {
+            this.level = level;
+            this.text = text;
+            this.written = written;
+        }
+    }
+
+    private static final BlockingQueue<Message> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+    private static volatile Level threshold = initialLevel();
+
+    static {
+        Thread writer = new Thread(NetworkLog::drain, "network-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private NetworkLog() {
+    }
+
+    static void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    static void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    static void warn(String message) {
+        log(Level.WARN, message);
+    }
+
+    static void error(String message) {
+        log(Level.ERROR, message);
+    }
+
+    // Lets callers skip building a message nobody will see
+    static boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0;
+    }
+
+    static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    // Messages lost to a full queue since startup
+    static long dropped() {
+        return DROPPED.get();
+    }
+
+    // Waits until everything logged so far has been written, e.g. before the
+    // console menu prints its next prompt
+    static void flush() {
+        CountDownLatch written = new CountDownLatch(1);
+        try {
+            QUEUE.put(new Message(null, null, written));
+            written.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void log(Level level, String message) {
+        if (isEnabled(level) && !QUEUE.offer(new Message(level, message, null))) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    private static void drain() {
+        while (true) {
+            Message message;
+            try {
+                message = QUEUE.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (message.written != null) {
+                System.out.flush();
+                System.err.flush();
+                message.written.countDown();
+                continue;
+            }
+            PrintStream stream = message.level == Level.ERROR ? System.err : System.out;
+            stream.println(message.text);
+        }
+    }
+
+    private static Level initialLevel() {
+        String configured = System.getProperty("pathfinders.log.level");
+        if (configured != null) {
+            try {
+                return Level.valueOf(configured.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown log level " + configured + ", using INFO.");
+            }
+        }
+        return Level.INFO;
+    }
+}
@@ -0,0 +1,228 @@
+package socialMediaPlatform;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// Call counts and latency histograms for SocialNetwork's operations, plus
+// gauges read from the current graph. Recording is a clock read and a few
+// counter increments, so it can stay on in production. The numbers are
+// published as JMX MBeans under socialMediaPlatform:type=NetworkMetrics and
+// can also be written to the log periodically.
+final class NetworkMetrics implements Closeable {
+
+    enum Operation {
+        ADD_USER("addUser"),
+        ADD_FRIEND("addFriend"),
+        REMOVE_FRIEND("removeFriend"),
+        ADD_POST("addUserPost"),
+        BATCH("batch"),
+        GET_MUTUAL_FRIENDS("getMutualFriends"),
+        SUGGEST_FRIENDS("suggestFriends"),
+        BFS_TRAVERSAL("bfsTraversal"),
+        SAVE_DATA("saveData"),
+        LOAD_DATA("loadData");
+
+        final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+    }
+
+    // JMX only exposes public interfaces
+    public interface OperationMBean {
+        long getCount();
+
+        double getMeanMicros();
+
+        double getMedianMicros();
+
+        double getP99Micros();
+
+        double getP999Micros();
+
+        double getMaxMicros();
+    }
+
+    public interface GaugesMBean {
+        int getUserCount();
+
+        long getEdgeCount();
+
+        int getMaxDegree();
+
+        int getPinnedVersions();
+    }
+
+    private static final String DOMAIN = "socialMediaPlatform";
+    // Tells apart the MBeans of networks open in the same JVM, e.g. in benchmarks
+    private static final AtomicInteger NETWORKS = new AtomicInteger();
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+    private final Supplier<FriendGraph> graph;
+    private final String network = Integer.toString(NETWORKS.incrementAndGet());
+    private final List<ObjectName> registered = new ArrayList<>();
+    private ScheduledExecutorService dumper;
+
+    NetworkMetrics(Supplier<FriendGraph> graph) {
+        this.graph = graph;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    // Records one call that started at startNanos (from System.nanoTime)
+    void record(Operation operation, long startNanos) {
+        histograms[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    LatencyHistogram histogram(Operation operation) {
+        return histograms[operation.ordinal()];
+    }
+
+    // Publishes one MBean per operation and one for the gauges. Failing to
+    // register only costs visibility, so it is logged rather than thrown.
+    synchronized void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (Operation operation : Operation.values()) {
+                ObjectName name = new ObjectName(DOMAIN + ":type=NetworkMetrics,network=" + network
+                        + ",operation=" + operation.label);
+                server.registerMBean(new StandardMBean(new OperationView(operation), OperationMBean.class), name);
+                registered.add(name);
+            }
+            ObjectName name = new ObjectName(DOMAIN + ":type=NetworkGauges,network=" + network);
+            server.registerMBean(new StandardMBean(new GaugeView(), GaugesMBean.class), name);
+            registered.add(name);
+        } catch (JMException e) {
+            NetworkLog.warn("Error registering network metrics: " + e.getMessage());
+        }
+    }
+
+    // Writes report() to the log every period until closed
+    synchronized void startDump(long period, TimeUnit unit) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "network-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> NetworkLog.info(report()), period, period, unit);
+    }
+
+    // Plain-text table of the gauges and every operation that has been called
+    String report() {
+        FriendGraph current = graph.get();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Network metrics: %d users, %d friendships, max degree %d%n",
+                current.size(), current.edgeCount(), current.maxDegree()));
+        report.append(String.format("%-18s %10s %10s %10s %10s %10s %10s",
+                "operation", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = histogram(operation).snapshot();
+            if (snapshot.count == 0) {
+                continue;
+            }
+            report.append(String.format("%n%-18s %10d %10.1f %10.1f %10.1f %10.1f %10.1f",
+                    operation.label, snapshot.count, snapshot.meanNanos() / 1000,
+                    micros(snapshot.percentileNanos(0.5)), micros(snapshot.percentileNanos(0.99)),
+                    micros(snapshot.percentileNanos(0.999)), micros(snapshot.maxNanos)));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                NetworkLog.warn("Error unregistering network metrics: " + e.getMessage());
+            }
+        }
+        registered.clear();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+
+    private final class OperationView implements OperationMBean {
+        private final LatencyHistogram histogram;
+
+        OperationView(Operation operation) {
+            this.histogram = histogram(operation);
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.count();
+        }
+
+        @Override
+        public double getMeanMicros() {
+            return histogram.snapshot().meanNanos() / 1000;
+        }
+
+        @Override
+        public double getMedianMicros() {
+            return micros(histogram.snapshot().percentileNanos(0.5));
+        }
+
+        @Override
+        public double getP99Micros() {
+            return micros(histogram.snapshot().percentileNanos(0.99));
+        }
+
+        @Override
+        public double getP999Micros() {
+            return micros(histogram.snapshot().percentileNanos(0.999));
+        }
+
+        @Override
+        public double getMaxMicros() {
+            return micros(histogram.snapshot().maxNanos);
+        }
+    }
+
+    private final class GaugeView implements GaugesMBean {
+        @Override
+        public int getUserCount() {
+            return graph.get().size();
+        }
+
+        @Override
+        public long getEdgeCount() {
+            return graph.get().edgeCount();
+        }
+
+        // Walks every user, so it is only computed when asked for
+        @Override
+        public int getMaxDegree() {
+            return graph.get().maxDegree();
+        }
+
+        @Override
+        public int getPinnedVersions() {
+            return graph.get().pinnedVersions();
+        }
+    }
+}
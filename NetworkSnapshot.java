@@ -0,0 +1,570 @@
+package socialMediaPlatform;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Versioned binary snapshot of the whole network.
+//
+// Layout (all integers big-endian):
+//   header    magic, version, sequence, counts and the absolute offset of every section
+//   strings   int[stringCount + 1] byte offsets into the blob, then the UTF-8 blob;
+//             usernames, names and post texts are interned so repeats are stored once
+//   users     per user: usernameId, nameId, followerCount, followingCount,
+//             ordered by username so a user's id is its rank
+//   adjacency CSR: int[userCount + 1] offsets, then sorted int[] friend ids
+//   posts     int[userCount + 1] offsets, then string ids oldest first
+//   post times long[postCount] timestamps in the same order (version 2 on;
+//             version 1 files have none and their posts read back as time 0)
+//
+// Friendships are written as integer ids, so unlike Java serialization nothing
+// recurses along friend chains however long they are.
+class NetworkSnapshot {
+
+    static final int MAGIC = 0x5046534E; // "PFSN"
+    static final int VERSION = 2;
+    // Oldest version that can still be read
+    static final int MIN_VERSION = 1;
+    static final int HEADER_BYTES = 128;
+    static final int USER_RECORD_INTS = 4;
+
+    private static final int BUFFER_BYTES = 256 * 1024;
+
+    // Network and log position read back from a snapshot
+    static final class Contents {
+        final Map<String, UserDirectory> users;
+        final FriendGraph graph;
+        final long sequence;
+
+        Contents(Map<String, UserDirectory> users, FriendGraph graph, long sequence) {
+            this.users = users;
+            this.graph = graph;
+            this.sequence = sequence;
+        }
+    }
+
+    // Section positions as stored in the header
+    static final class Header {
+        int version;
+        long sequence;
+        int userCount;
+        int stringCount;
+        long edgeEntries;
+        long postCount;
+        long stringsOffset;
+        long blobOffset;
+        long usersOffset;
+        long adjacencyOffset;
+        long postsOffset;
+        long fileLength;
+        long postTimesOffset;
+
+        static Header read(ByteBuffer buffer) throws IOException {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a network snapshot.");
+            }
+            int version = buffer.getInt();
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ".");
+            }
+            Header header = new Header();
+            header.version = version;
+            header.sequence = buffer.getLong();
+            header.userCount = buffer.getInt();
+            header.stringCount = buffer.getInt();
+            header.edgeEntries = buffer.getLong();
+            header.postCount = buffer.getLong();
+            header.stringsOffset = buffer.getLong();
+            header.blobOffset = buffer.getLong();
+            header.usersOffset = buffer.getLong();
+            header.adjacencyOffset = buffer.getLong();
+            header.postsOffset = buffer.getLong();
+            header.fileLength = buffer.getLong();
+            header.postTimesOffset = version >= 2 ? buffer.getLong() : 0;
+            return header;
+        }
+
+        void write(ByteBuffer buffer) {
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(sequence);
+            buffer.putInt(userCount);
+            buffer.putInt(stringCount);
+            buffer.putLong(edgeEntries);
+            buffer.putLong(postCount);
+            buffer.putLong(stringsOffset);
+            buffer.putLong(blobOffset);
+            buffer.putLong(usersOffset);
+            buffer.putLong(adjacencyOffset);
+            buffer.putLong(postsOffset);
+            buffer.putLong(fileLength);
+            buffer.putLong(postTimesOffset);
+            while (buffer.position() < HEADER_BYTES) {
+                buffer.put((byte) 0);
+            }
+        }
+    }
+
+    private NetworkSnapshot() {
+    }
+
+    // Writes every user in the graph to a temp file next to target and moves
+    // it into place. Users that are only in the graph's source are copied
+    // from it without being built. Returns the snapshot id of each graph id.
+    static int[] write(Path target, FriendGraph graph, long sequence) throws IOException {
+        int userCount = graph.size();
+        String[] usernames = new String[userCount];
+        Integer[] byUsername = new Integer[userCount];
+        for (int i = 0; i < userCount; i++) {
+            usernames[i] = graph.username(i);
+            byUsername[i] = i;
+        }
+        // A re-written snapshot is mostly in order already, which the sort handles in one pass
+        Arrays.sort(byUsername, Comparator.comparing(id -> usernames[id]));
+
+        // Graph ids are in registration order; snapshot ids are username ranks
+        int[] ordered = new int[userCount];
+        int[] snapshotIds = new int[userCount];
+        for (int i = 0; i < userCount; i++) {
+            ordered[i] = byUsername[i];
+            snapshotIds[ordered[i]] = i;
+        }
+
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] userStrings = new int[userCount * 2];
+        int[] counts = new int[userCount * 2];
+        // Each timeline is copied once, oldest first, so later posts cannot change the counts
+        String[][] postTexts = new String[userCount][];
+        long[][] postTimes = new long[userCount][];
+        FriendGraph.Source source = graph.source();
+        long edgeEntries = 0;
+        long postCount = 0;
+        for (int i = 0; i < userCount; i++) {
+            int id = ordered[i];
+            userStrings[2 * i] = intern(usernames[id], stringIds, strings);
+            userStrings[2 * i + 1] = intern(graph.name(id), stringIds, strings);
+            edgeEntries += graph.scanDegree(id);
+            UserDirectory user = graph.loadedUser(id);
+            if (user == null) {
+                counts[2 * i] = source.loadFollowerCount(id);
+                counts[2 * i + 1] = source.loadFollowingCount(id);
+                postTexts[i] = source.loadPostTexts(id);
+                postTimes[i] = source.loadPostTimes(id);
+            } else {
+                counts[2 * i] = user.getFollowerCount();
+                counts[2 * i + 1] = user.getFollowingCount();
+                copyTimeline(user, postTexts, postTimes, i);
+            }
+            for (String text : postTexts[i]) {
+                intern(text, stringIds, strings);
+            }
+            postCount += postTexts[i].length;
+        }
+
+        long blobBytes = 0;
+        for (byte[] bytes : strings) {
+            blobBytes += bytes.length;
+        }
+        if (blobBytes > Integer.MAX_VALUE || edgeEntries > Integer.MAX_VALUE || postCount > Integer.MAX_VALUE) {
+            throw new IOException("Network is too large for snapshot format version " + VERSION + ".");
+        }
+
+        Header header = new Header();
+        header.sequence = sequence;
+        header.userCount = userCount;
+        header.stringCount = strings.size();
+        header.edgeEntries = edgeEntries;
+        header.postCount = postCount;
+        header.stringsOffset = HEADER_BYTES;
+        header.blobOffset = header.stringsOffset + 4L * (strings.size() + 1);
+        header.usersOffset = align(header.blobOffset + blobBytes);
+        header.adjacencyOffset = header.usersOffset + 4L * USER_RECORD_INTS * userCount;
+        header.postsOffset = header.adjacencyOffset + 4L * (userCount + 1) + 4L * edgeEntries;
+        header.postTimesOffset = align(header.postsOffset + 4L * (userCount + 1) + 4L * postCount);
+        header.fileLength = header.postTimesOffset + 8L * postCount;
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             ChannelWriter out = new ChannelWriter(channel)) {
+
+            header.write(out.buffer);
+
+            int offset = 0;
+            out.putInt(0);
+            for (byte[] bytes : strings) {
+                offset += bytes.length;
+                out.putInt(offset);
+            }
+            for (byte[] bytes : strings) {
+                out.putBytes(bytes);
+            }
+            out.padTo(header.usersOffset);
+
+            for (int i = 0; i < userCount; i++) {
+                out.putInt(userStrings[2 * i]);
+                out.putInt(userStrings[2 * i + 1]);
+                out.putInt(counts[2 * i]);
+                out.putInt(counts[2 * i + 1]);
+            }
+
+            // Rows that are only in the source are decoded for the copy and not kept
+            int[] scratch = new int[16];
+            int edgeOffset = 0;
+            out.putInt(0);
+            for (int id : ordered) {
+                edgeOffset += graph.scanDegree(id);
+                out.putInt(edgeOffset);
+            }
+            for (int id : ordered) {
+                int[] row = graph.scanNeighbors(id);
+                if (scratch.length < row.length) {
+                    scratch = new int[row.length];
+                }
+                for (int i = 0; i < row.length; i++) {
+                    scratch[i] = snapshotIds[row[i]];
+                }
+                Arrays.sort(scratch, 0, row.length);
+                for (int i = 0; i < row.length; i++) {
+                    out.putInt(scratch[i]);
+                }
+            }
+
+            int postOffset = 0;
+            out.putInt(0);
+            for (String[] texts : postTexts) {
+                postOffset += texts.length;
+                out.putInt(postOffset);
+            }
+            for (String[] texts : postTexts) {
+                for (String text : texts) {
+                    out.putInt(stringIds.get(text));
+                }
+            }
+            out.padTo(header.postTimesOffset);
+            for (long[] times : postTimes) {
+                for (long time : times) {
+                    out.putLong(time);
+                }
+            }
+
+            if (out.position() != header.fileLength) {
+                throw new IOException("Network changed while the snapshot was being written.");
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return snapshotIds;
+    }
+
+    // Timelines are newest first, the file is oldest first. A post evicted
+    // while it is copied is left out.
+    private static void copyTimeline(UserDirectory user, String[][] postTexts, long[][] postTimes, int index) {
+        Post[] timeline = user.timeline();
+        String[] texts = new String[timeline.length];
+        long[] times = new long[timeline.length];
+        int kept = 0;
+        for (int p = timeline.length - 1; p >= 0; p--) {
+            String text = timeline[p].getText();
+            if (text != null) {
+                texts[kept] = text;
+                times[kept++] = timeline[p].getTimestamp();
+            }
+        }
+        postTexts[index] = kept == texts.length ? texts : Arrays.copyOf(texts, kept);
+        postTimes[index] = kept == times.length ? times : Arrays.copyOf(times, kept);
+    }
+
+    static Contents read(Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ChannelReader in = new ChannelReader(channel);
+            in.ensure(HEADER_BYTES);
+            Header header = Header.read(in.buffer);
+            in.skipTo(header.stringsOffset);
+            if (header.fileLength != channel.size()) {
+                throw new IOException("Snapshot is truncated.");
+            }
+
+            int[] stringOffsets = new int[header.stringCount + 1];
+            for (int i = 0; i <= header.stringCount; i++) {
+                stringOffsets[i] = in.getInt();
+            }
+            String[] strings = new String[header.stringCount];
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < header.stringCount; i++) {
+                int length = stringOffsets[i + 1] - stringOffsets[i];
+                if (scratch.length < length) {
+                    scratch = new byte[length];
+                }
+                in.getBytes(scratch, length);
+                strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+            }
+            in.skipTo(header.usersOffset);
+
+            UserDirectory[] byId = new UserDirectory[header.userCount];
+            Map<String, UserDirectory> users = new ConcurrentHashMap<>(Math.max(16, (int) (header.userCount / 0.75f) + 1));
+            for (int i = 0; i < header.userCount; i++) {
+                UserDirectory user = new UserDirectory(strings[in.getInt()], strings[in.getInt()]);
+                user.restoreCounts(in.getInt(), in.getInt());
+                byId[i] = user;
+                users.put(user.getUsername(), user);
+            }
+
+            // Snapshot ids become graph ids, so the sorted rows are used as they are
+            FriendGraph graph = new FriendGraph(header.userCount);
+            int[] edgeOffsets = readOffsets(in, header.userCount);
+            for (int i = 0; i < header.userCount; i++) {
+                int[] row = new int[edgeOffsets[i + 1] - edgeOffsets[i]];
+                for (int e = 0; e < row.length; e++) {
+                    row[e] = in.getInt();
+                }
+                graph.restore(i, byId[i], row);
+            }
+            graph.addRestoredEdges(header.edgeEntries / 2);
+
+            int[] postOffsets = readOffsets(in, header.userCount);
+            int[] postStrings = new int[(int) header.postCount];
+            for (int p = 0; p < postStrings.length; p++) {
+                postStrings[p] = in.getInt();
+            }
+            long[] postTimes = new long[postStrings.length];
+            if (header.postTimesOffset != 0) {
+                in.skipTo(header.postTimesOffset);
+                for (int p = 0; p < postTimes.length; p++) {
+                    postTimes[p] = in.getLong();
+                }
+            }
+            for (int i = 0; i < header.userCount; i++) {
+                for (int p = postOffsets[i]; p < postOffsets[i + 1]; p++) {
+                    byId[i].restorePost(strings[postStrings[p]], postTimes[p]);
+                }
+            }
+            return new Contents(users, graph, header.sequence);
+        }
+    }
+
+    // Converts a snapshot written by the old ObjectOutputStream-based saveData()
+    static void convertLegacy(Path legacy, Path target) throws IOException {
+        Contents contents = readLegacy(legacy);
+        write(target, contents.graph, contents.sequence);
+    }
+
+    // Java deserialization recurses once per friend hop, so the legacy file is
+    // read on a thread with a large stack to survive long friend chains
+    @SuppressWarnings("unchecked")
+    static Contents readLegacy(Path legacy) throws IOException {
+        Object[] result = new Object[1];
+        Throwable[] error = new Throwable[1];
+        Thread reader = new Thread(null, () -> {
+            try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(legacy)))) {
+                Map<String, UserDirectory> users = (Map<String, UserDirectory>) in.readObject();
+                long sequence;
+                try {
+                    sequence = in.readLong();
+                } catch (EOFException e) {
+                    sequence = 0;
+                }
+                result[0] = new Contents(new ConcurrentHashMap<>(users), legacyGraph(users), sequence);
+            } catch (Throwable t) {
+                error[0] = t;
+            }
+        }, "legacy-snapshot-reader", 1L << 30);
+        reader.start();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading legacy snapshot.");
+        }
+        if (error[0] instanceof IOException) {
+            throw (IOException) error[0];
+        }
+        if (error[0] != null) {
+            throw new IOException("Could not read legacy snapshot: " + error[0], error[0]);
+        }
+        return (Contents) result[0];
+    }
+
+    // Moves the HashSet friend lists of legacy objects into a FriendGraph
+    private static FriendGraph legacyGraph(Map<String, UserDirectory> users) {
+        FriendGraph graph = new FriendGraph(users.size());
+        for (UserDirectory user : users.values()) {
+            graph.register(user);
+        }
+        for (UserDirectory user : users.values()) {
+            Set<UserDirectory> friends = user.takeLegacyFriends();
+            if (friends == null) {
+                continue;
+            }
+            for (UserDirectory friend : friends) {
+                // Friends missing from the map were dropped by the old code's own bugs
+                if (friend.graph() == graph && friend != user) {
+                    graph.link(user.id(), friend.id());
+                }
+            }
+        }
+        return graph;
+    }
+
+    // Usage: java socialMediaPlatform.NetworkSnapshot <legacy .ser file> <new snapshot file>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: NetworkSnapshot <legacy .ser file> <new snapshot file>");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        convertLegacy(Paths.get(args[0]), Paths.get(args[1]));
+        System.out.printf("Converted %s to %s in %d ms (%d -> %d bytes).%n", args[0], args[1],
+                (System.nanoTime() - start) / 1_000_000, Files.size(Paths.get(args[0])), Files.size(Paths.get(args[1])));
+    }
+
+    private static int[] readOffsets(ChannelReader in, int userCount) throws IOException {
+        int[] offsets = new int[userCount + 1];
+        for (int i = 0; i <= userCount; i++) {
+            offsets[i] = in.getInt();
+        }
+        return offsets;
+    }
+
+    private static int intern(String value, Map<String, Integer> stringIds, List<byte[]> strings) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(value, id);
+            strings.add(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    // Buffered sequential writer over a FileChannel
+    private static final class ChannelWriter implements Closeable {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final FileChannel channel;
+        private long flushed;
+
+        ChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            if (buffer.remaining() < 8) {
+                flush();
+            }
+            buffer.putLong(value);
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void padTo(long position) throws IOException {
+            while (position() < position) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                buffer.put((byte) 0);
+            }
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    // Buffered sequential reader over a FileChannel
+    private static final class ChannelReader {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final FileChannel channel;
+        private long consumed;
+
+        ChannelReader(FileChannel channel) {
+            this.channel = channel;
+            buffer.limit(0);
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            consumed += buffer.position();
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Snapshot ended unexpectedly.");
+                }
+            }
+            buffer.flip();
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(8);
+            return buffer.getLong();
+        }
+
+        void getBytes(byte[] target, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                ensure(1);
+                int chunk = Math.min(buffer.remaining(), length - offset);
+                buffer.get(target, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        void skipTo(long position) throws IOException {
+            long current = consumed + buffer.position();
+            if (position < current) {
+                throw new IOException("Snapshot sections are out of order.");
+            }
+            while (current < position) {
+                ensure(1);
+                int step = (int) Math.min(buffer.remaining(), position - current);
+                buffer.position(buffer.position() + step);
+                current += step;
+            }
+        }
+    }
+}
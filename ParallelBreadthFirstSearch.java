@@ -0,0 +1,219 @@
+package socialMediaPlatform;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Level-synchronous BreadthFirstSearch spread over a fork-join pool. Each
+// level is cut into slices that idle workers steal. Top-down, a slice claims
+// the friends it discovers with a compare-and-set on the shared visited
+// bitset, so each user gets exactly one parent without a lock; bottom-up, a
+// slice owns a range of ids and needs no atomics at all. Every slice collects
+// what it found in its own buffer, and the buffers are concatenated into the
+// next level once all slices are done.
+final class ParallelBreadthFirstSearch {
+
+    // Fewer frontier users or ids than this are not worth another task
+    private static final int MIN_SLICE = 1024;
+
+    private ParallelBreadthFirstSearch() {
+    }
+
+    static BfsResult run(FriendGraph graph, int source, int maxDepth, ForkJoinPool pool) {
+        int userCount = graph.size();
+        int[] distance = new int[userCount];
+        int[] parent = new int[userCount];
+        Arrays.fill(distance, BfsResult.UNREACHED);
+        Arrays.fill(parent, BfsResult.UNREACHED);
+        AtomicLongArray visited = new AtomicLongArray((userCount + 63) >>> 6);
+        int[] queue = new int[userCount];
+
+        queue[0] = source;
+        distance[source] = 0;
+        visited.set(source >>> 6, 1L << source);
+        int levelStart = 0;
+        int levelEnd = 1;
+        int depth = 0;
+
+        long unexploredEdges = 2 * graph.edgeCount() - graph.degree(source);
+        long frontierEdges = graph.degree(source);
+        boolean bottomUp = false;
+        int maxSlices = pool.getParallelism() * 4;
+
+        while (levelStart < levelEnd && depth < maxDepth) {
+            int frontierSize = levelEnd - levelStart;
+            if (!bottomUp && frontierEdges > unexploredEdges / BreadthFirstSearch.ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < userCount / BreadthFirstSearch.BETA) {
+                bottomUp = false;
+            }
+
+            int nextDepth = depth + 1;
+            Slice[] slices;
+            if (bottomUp) {
+                long[] frontier = new long[visited.length()];
+                for (int i = levelStart; i < levelEnd; i++) {
+                    frontier[queue[i] >>> 6] |= 1L << queue[i];
+                }
+                // Whole bitset words per slice, so no two slices write the same word
+                int words = visited.length();
+                int count = sliceCount(userCount, maxSlices);
+                slices = new Slice[count];
+                for (int s = 0; s < count; s++) {
+                    int fromWord = (int) ((long) words * s / count);
+                    int toWord = (int) ((long) words * (s + 1) / count);
+                    slices[s] = new BottomUpSlice(graph, visited, frontier, distance, parent, nextDepth,
+                            fromWord << 6, Math.min(userCount, toWord << 6));
+                }
+            } else {
+                int count = sliceCount(frontierSize, maxSlices);
+                slices = new Slice[count];
+                for (int s = 0; s < count; s++) {
+                    int from = levelStart + (int) ((long) frontierSize * s / count);
+                    int to = levelStart + (int) ((long) frontierSize * (s + 1) / count);
+                    slices[s] = new TopDownSlice(graph, visited, queue, distance, parent, nextDepth, from, to);
+                }
+            }
+            if (slices.length == 1) {
+                slices[0].invoke();
+            } else {
+                pool.invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        ForkJoinTask.invokeAll(slices);
+                    }
+                });
+            }
+
+            int next = levelEnd;
+            frontierEdges = 0;
+            for (Slice slice : slices) {
+                System.arraycopy(slice.found, 0, queue, next, slice.foundCount);
+                next += slice.foundCount;
+                frontierEdges += slice.foundEdges;
+            }
+            unexploredEdges -= frontierEdges;
+            levelStart = levelEnd;
+            levelEnd = next;
+            if (levelStart < levelEnd) {
+                depth = nextDepth;
+            }
+        }
+        return new BfsResult(graph, source, distance, parent, queue, levelEnd, depth);
+    }
+
+    private static int sliceCount(int work, int maxSlices) {
+        return Math.max(1, Math.min(maxSlices, work / MIN_SLICE));
+    }
+
+    // Sets the bit for id; false if another slice got there first
+    private static boolean claim(AtomicLongArray visited, int id) {
+        int word = id >>> 6;
+        long bit = 1L << id;
+        long current = visited.get(word);
+        while ((current & bit) == 0) {
+            if (visited.compareAndSet(word, current, current | bit)) {
+                return true;
+            }
+            current = visited.get(word);
+        }
+        return false;
+    }
+
+    @SuppressWarnings("serial")
+    private abstract static class Slice extends RecursiveAction {
+        final FriendGraph graph;
+        final AtomicLongArray visited;
+        final int[] distance;
+        final int[] parent;
+        final int depth;
+        int[] found = new int[64];
+        int foundCount;
+        long foundEdges;
+
+        Slice(FriendGraph graph, AtomicLongArray visited, int[] distance, int[] parent, int depth) {
+            this.graph = graph;
+            this.visited = visited;
+            this.distance = distance;
+            this.parent = parent;
+            this.depth = depth;
+        }
+
+        // Only the slice that claimed id writes its entries
+        void found(int id, int from) {
+            distance[id] = depth;
+            parent[id] = from;
+            if (foundCount == found.length) {
+                found = Arrays.copyOf(found, foundCount * 2);
+            }
+            found[foundCount++] = id;
+            foundEdges += graph.degree(id);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class TopDownSlice extends Slice {
+        private final int[] queue;
+        private final int from;
+        private final int to;
+
+        TopDownSlice(FriendGraph graph, AtomicLongArray visited, int[] queue, int[] distance, int[] parent,
+                     int depth, int from, int to) {
+            super(graph, visited, distance, parent, depth);
+            this.queue = queue;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            int userCount = distance.length;
+            for (int i = from; i < to; i++) {
+                int current = queue[i];
+                for (int friend : graph.neighbors(current)) {
+                    // Users registered after the search started are left out
+                    if (friend < userCount && claim(visited, friend)) {
+                        found(friend, current);
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class BottomUpSlice extends Slice {
+        private final long[] frontier;
+        private final int fromId;
+        private final int toId;
+
+        BottomUpSlice(FriendGraph graph, AtomicLongArray visited, long[] frontier, int[] distance, int[] parent,
+                      int depth, int fromId, int toId) {
+            super(graph, visited, distance, parent, depth);
+            this.frontier = frontier;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected void compute() {
+            int userCount = distance.length;
+            for (int id = fromId; id < toId; id++) {
+                int word = id >>> 6;
+                long bit = 1L << id;
+                if ((visited.get(word) & bit) != 0) {
+                    continue;
+                }
+                for (int friend : graph.neighbors(id)) {
+                    if (friend < userCount && (frontier[friend >>> 6] & (1L << friend)) != 0) {
+                        // This slice owns the word, so a plain read-modify-write is enough
+                        visited.set(word, visited.get(word) | bit);
+                        found(id, friend);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -3,6 +3,9 @@ package socialMediaPlatform;
 
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -16,19 +19,37 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.effect.DropShadow;
 import javafx.animation.FadeTransition;
+import javafx.animation.PauseTransition;
+import javafx.geometry.Side;
 import javafx.util.Duration;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class PathfindersApp extends Application {
     private SocialNetwork socialNetwork;
+    // Runs network calls in the background so the window stays responsive
+    private AsyncNetworkService networkService;
     private static final String PRIMARY_COLOR = "#1E88E5";    // Deep blue
     private static final String SECONDARY_COLOR = "#FFA000";  // Amber
     private static final String ACCENT_COLOR = "#4CAF50";     // Green
     private static final String TEXT_COLOR = "#212121";       // Dark gray
     private static final String BACKGROUND_COLOR = "#FFFFFF"; // White
+    // Pause in typing before username suggestions are looked up
+    private static final int TYPEAHEAD_DELAY_MILLIS = 150;
+    // Users fetched per request by the scrolling lists, and how close to the
+    // last loaded row the next request is made
+    private static final int LIST_PAGE_SIZE = 100;
+    private static final int LIST_PREFETCH_ROWS = 20;
+    // Friends named per row of "View Connections"
+    private static final int FRIEND_PREVIEW = 5;
     private Stage primaryStage;
 
 
@@ -40,12 +61,23 @@ public class PathfindersApp extends Application {
     public void start(Stage primaryStage) {
         this.primaryStage = primaryStage;
         socialNetwork = new SocialNetwork();
+        networkService = new AsyncNetworkService(socialNetwork, Platform::runLater);
         primaryStage.setTitle("Pathfinders - Shared Roads, Shared Stories");
 
 
         showLoginPage();
     }
 
+    @Override
+    public void stop() {
+        if (networkService != null) {
+            networkService.close();
+        }
+        if (socialNetwork != null) {
+            socialNetwork.close();
+        }
+    }
+
     private void showLoginPage() {
 
         StackPane rootLayout = new StackPane();
@@ -147,7 +179,7 @@ public class PathfindersApp extends Application {
     }
 
     private void handleLogin(String username, String password) {
-        System.out.println("Attempting login for username: " + username);
+        NetworkLog.debug("Attempting login for username: " + username);
         if (username.isEmpty() || password.isEmpty()) {
             showAlert("Login Failed", "Username and password cannot be empty.", Alert.AlertType.ERROR);
             return;
@@ -155,7 +187,7 @@ public class PathfindersApp extends Application {
 
         if (socialNetwork.getUsers().containsKey(username)) {
 
-            System.out.println("Login successful for user: " + username);
+            NetworkLog.info("Login successful for user: " + username);
             showAlert("Welcome Back!", "Login successful. Enjoy your journey!", Alert.AlertType.INFORMATION);
             showMainApplication(username);
         } else {
@@ -172,9 +204,63 @@ public class PathfindersApp extends Application {
             showAlert("Already Taken", "This username is already on an adventure. Please choose another.", Alert.AlertType.ERROR);
             return;
         }
-        socialNetwork.addUser(username, name);
-        showAlert("Welcome Aboard!", "Your account has been created. Your journey begins now!", Alert.AlertType.INFORMATION);
-        showLoginPage();
+        whenDone(networkService.update(network -> network.addUser(username, name)), null, done -> {
+            showAlert("Welcome Aboard!", "Your account has been created. Your journey begins now!", Alert.AlertType.INFORMATION);
+            showLoginPage();
+        });
+    }
+
+    // Text field for an existing user's username, with suggestions shown
+    // once typing pauses
+    private TextField createUsernameField(String prompt) {
+        TextField field = createStyledTextField(prompt);
+        ContextMenu suggestions = new ContextMenu();
+
+        PauseTransition debounce = new PauseTransition(Duration.millis(TYPEAHEAD_DELAY_MILLIS));
+        debounce.setOnFinished(e -> {
+            String prefix = field.getText().trim();
+            if (prefix.isEmpty() || !field.isFocused()) {
+                suggestions.hide();
+                return;
+            }
+
+            // A lookup still running for older text is cancelled by this one
+            networkService.query(field, network -> network.completeUsers(prefix))
+                    .thenAccept(matches -> showSuggestions(field, suggestions, prefix, matches));
+        });
+
+        field.textProperty().addListener((observable, oldText, newText) -> debounce.playFromStart());
+        field.focusedProperty().addListener((observable, wasFocused, focused) -> {
+            if (!focused) {
+                suggestions.hide();
+            }
+        });
+        return field;
+    }
+
+    private void showSuggestions(TextField field, ContextMenu suggestions, String prefix, List<UserDirectory> matches) {
+        // Nothing to offer, the user moved on, or they just picked the only match
+        if (matches.isEmpty() || !field.isFocused() || !field.getText().trim().equals(prefix)
+                || (matches.size() == 1 && matches.get(0).getUsername().equals(prefix))) {
+            suggestions.hide();
+            return;
+        }
+
+        List<MenuItem> items = new ArrayList<>();
+        for (UserDirectory user : matches) {
+            MenuItem item = new MenuItem(user.getUsername() + " (" + user.getName() + ")");
+            item.setMnemonicParsing(false);
+            item.setOnAction(event -> {
+                field.setText(user.getUsername());
+                field.positionCaret(field.getText().length());
+                suggestions.hide();
+            });
+            items.add(item);
+        }
+        suggestions.getItems().setAll(items);
+        if (!suggestions.isShowing()) {
+            suggestions.show(field, Side.BOTTOM, 0, 0);
+        }
     }
 
     private TextField createStyledTextField(String prompt) {
@@ -290,10 +376,12 @@ public class PathfindersApp extends Application {
         Tab addPostTab = createStyledTab("Share Story", createAddPostPane(), "post.jpg");
         Tab mutualFriendsTab = createMutualFriendsTab();
         Tab userPostsTab = createUserPostsTab();
+        Tab separationTab = createSeparationTab();
+        Tab searchTab = createSearchTab();
 
         tabPane.getTabs().addAll(
                 userTab, friendTab, displayTab, recommendTab,
-                addPostTab, mutualFriendsTab, userPostsTab
+                addPostTab, mutualFriendsTab, userPostsTab, separationTab, searchTab
         );
 
         mainLayout.setCenter(tabPane);
@@ -316,6 +404,7 @@ public class PathfindersApp extends Application {
         TextField nameField = createStyledTextField("Traveler's Full Name");
 
         Button addUserButton = createStyledButton("Add to Our Community", PRIMARY_COLOR);
+        ProgressIndicator progress = createProgressIndicator();
         addUserButton.setOnAction(e -> {
             String username = usernameField.getText().trim();
             String name = nameField.getText().trim();
@@ -328,14 +417,14 @@ public class PathfindersApp extends Application {
             if (socialNetwork.getUsers().containsKey(username)) {
                 showAlert("Username Exists", "Username already exists.", Alert.AlertType.ERROR);
             } else {
-                socialNetwork.addUser(username, name);
-                showAlert("Welcome Aboard!", "A new traveler has joined our community!", Alert.AlertType.INFORMATION);
+                whenDone(networkService.update(network -> network.addUser(username, name)), progress,
+                        done -> showAlert("Welcome Aboard!", "A new traveler has joined our community!", Alert.AlertType.INFORMATION));
                 usernameField.clear();
                 nameField.clear();
             }
         });
 
-        layout.getChildren().addAll(title, usernameField, nameField, addUserButton);
+        layout.getChildren().addAll(title, usernameField, nameField, addUserButton, progress);
         return layout;
     }
 
@@ -347,10 +436,11 @@ public class PathfindersApp extends Application {
 
         Label title = createTitle("Connect Travelers");
 
-        TextField user1IdField = createStyledTextField("First Traveler's Username");
-        TextField user2IdField = createStyledTextField("Second Traveler's Username");
+        TextField user1IdField = createUsernameField("First Traveler's Username");
+        TextField user2IdField = createUsernameField("Second Traveler's Username");
 
         Button addFriendButton = createStyledButton("Create Connection", SECONDARY_COLOR);
+        ProgressIndicator progress = createProgressIndicator();
         addFriendButton.setOnAction(e -> {
             String user1Id = user1IdField.getText().trim();
             String user2Id = user2IdField.getText().trim();
@@ -370,8 +460,8 @@ public class PathfindersApp extends Application {
                 return;
             }
 
-            socialNetwork.addFriend(user1Id, user2Id);
-            showAlert("New Connection!", "These travelers are now connected on their journey!", Alert.AlertType.INFORMATION);
+            whenDone(networkService.update(network -> network.addFriend(user1Id, user2Id)), progress,
+                    done -> showAlert("New Connection!", "These travelers are now connected on their journey!", Alert.AlertType.INFORMATION));
 
             user1IdField.clear();
             user2IdField.clear();
@@ -392,14 +482,14 @@ public class PathfindersApp extends Application {
                 return;
             }
 
-            socialNetwork.removeFriend(user1Id, user2Id);
-            showAlert("Connection Status", "Connection removed if it existed.", Alert.AlertType.INFORMATION);
+            whenDone(networkService.update(network -> network.removeFriend(user1Id, user2Id)), progress,
+                    done -> showAlert("Connection Status", "Connection removed if it existed.", Alert.AlertType.INFORMATION));
 
             user1IdField.clear();
             user2IdField.clear();
         });
 
-        layout.getChildren().addAll(title, user1IdField, user2IdField, addFriendButton, removeFriendButton);
+        layout.getChildren().addAll(title, user1IdField, user2IdField, addFriendButton, removeFriendButton, progress);
         return layout;
     }
 
@@ -412,32 +502,14 @@ public class PathfindersApp extends Application {
         Label title = createTitle("Explore Our Network");
 
         Button displayUsersButton = createStyledButton("View All Travelers", PRIMARY_COLOR);
-        displayUsersButton.setOnAction(e -> {
-            StringBuilder content = new StringBuilder();
-            for (UserDirectory user : socialNetwork.getUsers().values()) {
-                content.append(user.getUsername())
-                        .append(" - ")
-                        .append(user.getName())
-                        .append("\n");
-            }
-            showAlert("Our Global Community", content.toString(), Alert.AlertType.INFORMATION);
-        });
+        displayUsersButton.setOnAction(e -> showUserList("Our Global Community",
+                cursor -> socialNetwork.listUsers(cursor, LIST_PAGE_SIZE),
+                user -> user.getUsername() + " - " + user.getName()));
 
         Button displayNetworkButton = createStyledButton("View Connections", SECONDARY_COLOR);
-        displayNetworkButton.setOnAction(e -> {
-            StringBuilder content = new StringBuilder();
-            for (UserDirectory user : socialNetwork.getUsers().values()) {
-                content.append(user.getName()).append(" -> ");
-                for (UserDirectory friend : user.getFriends()) {
-                    content.append(friend.getName()).append(", ");
-                }
-                if (!user.getFriends().isEmpty()) {
-                    content.setLength(content.length() - 2);
-                }
-                content.append("\n");
-            }
-            showAlert("Global Connections", content.toString(), Alert.AlertType.INFORMATION);
-        });
+        displayNetworkButton.setOnAction(e -> showUserList("Global Connections",
+                cursor -> socialNetwork.listUsers(cursor, LIST_PAGE_SIZE),
+                this::describeConnections));
 
         layout.getChildren().addAll(title, displayUsersButton, displayNetworkButton);
         return layout;
@@ -453,9 +525,10 @@ public class PathfindersApp extends Application {
 
         Label title = createTitle("Discover New Connections");
 
-        TextField userIdField = createStyledTextField("Enter Traveler's Username");
+        TextField userIdField = createUsernameField("Enter Traveler's Username");
 
         Button recommendButton = createStyledButton("Find New Connections", PRIMARY_COLOR);
+        ProgressIndicator progress = createProgressIndicator();
         recommendButton.setOnAction(e -> {
             String userId = userIdField.getText().trim();
 
@@ -469,17 +542,20 @@ public class PathfindersApp extends Application {
                 return;
             }
 
-            Set<UserDirectory> recommendations = socialNetwork.suggestFriends(userId);
-            StringBuilder content = new StringBuilder();
+            whenDone(networkService.query(recommendButton, network -> network.suggestFriends(userId)), progress, recommendations -> {
+                StringBuilder content = new StringBuilder();
 
-            for (UserDirectory user : recommendations) {
-                content.append(user.getName()).append(" (").append(user.getUsername()).append(")\n");
-            }
+                for (FriendSuggestion suggestion : recommendations) {
+                    UserDirectory user = suggestion.getUser();
+                    content.append(user.getName()).append(" (").append(user.getUsername()).append(") - ")
+                            .append(suggestion.getMutualFriends()).append(" shared connections\n");
+                }
 
-            showAlert("Recommended Connections", content.toString(), Alert.AlertType.INFORMATION);
+                showAlert("Recommended Connections", content.toString(), Alert.AlertType.INFORMATION);
+            });
         });
 
-        layout.getChildren().addAll(title, userIdField, recommendButton);
+        layout.getChildren().addAll(title, userIdField, recommendButton, progress);
         return layout;
     }
 
@@ -491,7 +567,7 @@ public class PathfindersApp extends Application {
 
         Label title = createTitle("Share Your Journey");
 
-        TextField usernameField = createStyledTextField("Your Username");
+        TextField usernameField = createUsernameField("Your Username");
 
         TextArea postArea = new TextArea();
         postArea.setPromptText("Tell us about your adventure...");
@@ -501,6 +577,7 @@ public class PathfindersApp extends Application {
         postArea.setPrefHeight(100);
 
         Button addPostButton = createStyledButton("Share Your Story", SECONDARY_COLOR);
+        ProgressIndicator progress = createProgressIndicator();
         addPostButton.setOnAction(e -> {
             String username = usernameField.getText().trim();
             String post = postArea.getText().trim();
@@ -515,14 +592,14 @@ public class PathfindersApp extends Application {
                 return;
             }
 
-            socialNetwork.addUserPost(username, post);
-            showAlert("Story Shared!", "Your journey has been shared with our community!", Alert.AlertType.INFORMATION);
+            whenDone(networkService.update(network -> network.addUserPost(username, post)), progress,
+                    done -> showAlert("Story Shared!", "Your journey has been shared with our community!", Alert.AlertType.INFORMATION));
 
             usernameField.clear();
             postArea.clear();
         });
 
-        layout.getChildren().addAll(title, usernameField, postArea, addPostButton);
+        layout.getChildren().addAll(title, usernameField, postArea, addPostButton, progress);
         return layout;
     }
 
@@ -534,10 +611,11 @@ public class PathfindersApp extends Application {
 
         Label title = createTitle("Mutual Connections");
 
-        TextField user1Field = createStyledTextField("First Traveler's Username");
-        TextField user2Field = createStyledTextField("Second Traveler's Username");
+        TextField user1Field = createUsernameField("First Traveler's Username");
+        TextField user2Field = createUsernameField("Second Traveler's Username");
 
         Button findMutualFriendsButton = createStyledButton("Discover Shared Connections", PRIMARY_COLOR);
+        ProgressIndicator progress = createProgressIndicator();
         TextArea mutualFriendsArea = new TextArea();
         mutualFriendsArea.setEditable(false);
         mutualFriendsArea.setPrefWidth(300);
@@ -559,17 +637,18 @@ public class PathfindersApp extends Application {
                 return;
             }
 
-            Set<UserDirectory> mutualFriends = socialNetwork.getMutualFriends(user1, user2);
-            StringBuilder content = new StringBuilder("Shared Connections:\n");
+            whenDone(networkService.query(findMutualFriendsButton, network -> {
+                Set<UserDirectory> mutualFriends = network.getMutualFriends(user1, user2);
+                StringBuilder content = new StringBuilder("Shared Connections:\n");
 
-            for (UserDirectory friend : mutualFriends) {
-                content.append(friend.getName()).append(" (").append(friend.getUsername()).append(")\n");
-            }
-
-            mutualFriendsArea.setText(content.toString());
+                for (UserDirectory friend : mutualFriends) {
+                    content.append(friend.getName()).append(" (").append(friend.getUsername()).append(")\n");
+                }
+                return content.toString();
+            }), progress, mutualFriendsArea::setText);
         });
 
-        layout.getChildren().addAll(title, user1Field, user2Field, findMutualFriendsButton, mutualFriendsArea);
+        layout.getChildren().addAll(title, user1Field, user2Field, findMutualFriendsButton, progress, mutualFriendsArea);
 
         Tab tab = new Tab("Common Connections", layout);
         tab.setClosable(false);
@@ -584,9 +663,10 @@ public class PathfindersApp extends Application {
 
         Label title = createTitle("Explore Traveler Stories");
 
-        TextField usernameField = createStyledTextField("Enter Traveler's Username");
+        TextField usernameField = createUsernameField("Enter Traveler's Username");
 
         Button viewPostsButton = createStyledButton("View Stories", PRIMARY_COLOR);
+        ProgressIndicator progress = createProgressIndicator();
         TextArea postsArea = new TextArea();
         postsArea.setEditable(false);
         postsArea.setPrefWidth(300);
@@ -602,27 +682,294 @@ public class PathfindersApp extends Application {
                 return;
             }
 
-            UserDirectory user = socialNetwork.getUsers().get(username);
+            whenDone(networkService.query(viewPostsButton, network -> {
+                UserDirectory user = network.getUsers().get(username);
+                if (user == null) {
+                    return null;
+                }
+
+                StringBuilder content = new StringBuilder("Stories shared by " + user.getName() + ":\n");
+                for (String post : user.getPosts()) {
+                    content.append("- ").append(post).append("\n\n");
+                }
+                return content.toString();
+            }), progress, content -> {
+                if (content == null) {
+                    showAlert("Traveler Not Found", "We couldn't find a traveler with that username. Please check and try again.", Alert.AlertType.ERROR);
+                    return;
+                }
+                postsArea.setText(content);
+            });
+        });
+
+        layout.getChildren().addAll(title, usernameField, viewPostsButton, progress, postsArea);
+
+        Tab tab = new Tab("Traveler Stories", layout);
+        tab.setClosable(false);
+        return tab;
+    }
+
+    private Tab createSeparationTab() {
+        VBox layout = new VBox(20);
+        layout.setAlignment(Pos.CENTER);
+        layout.setPadding(new Insets(40));
+        layout.setStyle("-fx-background-color: rgba(255, 255, 255, 0.9); -fx-background-radius: 20;");
+
+        Label title = createTitle("Degrees of Separation");
+
+        TextField user1Field = createUsernameField("First Traveler's Username");
+        TextField user2Field = createUsernameField("Second Traveler's Username");
+        TextField maxHopsField = createStyledTextField("Maximum Hops (optional)");
+
+        Button findPathButton = createStyledButton("Find Connection Path", PRIMARY_COLOR);
+        ProgressIndicator progress = createProgressIndicator();
+        TextArea pathArea = new TextArea();
+        pathArea.setEditable(false);
+        pathArea.setPrefWidth(300);
+        pathArea.setPrefHeight(150);
+        pathArea.setStyle("-fx-background-color: white; -fx-border-color: " + PRIMARY_COLOR + "; " +
+                "-fx-border-radius: 5; -fx-background-radius: 5; -fx-padding: 10; -fx-font-size: 14px;");
 
-            if (user == null) {
-                showAlert("Traveler Not Found", "We couldn't find a traveler with that username. Please check and try again.", Alert.AlertType.ERROR);
+        findPathButton.setOnAction(e -> {
+            String user1 = user1Field.getText().trim();
+            String user2 = user2Field.getText().trim();
+            String maxHopsText = maxHopsField.getText().trim();
+
+            if (user1.isEmpty() || user2.isEmpty()) {
+                showAlert("Missing Information", "Both travelers' usernames are needed to find a connection path!", Alert.AlertType.ERROR);
+                return;
+            }
+
+            if (!socialNetwork.getUsers().containsKey(user1) || !socialNetwork.getUsers().containsKey(user2)) {
+                showAlert("User Not Found", "One or both users not found.", Alert.AlertType.ERROR);
                 return;
             }
 
-            StringBuilder content = new StringBuilder("Stories shared by " + user.getName() + ":\n");
-            for (String post : user.getPosts()) {
-                content.append("- ").append(post).append("\n\n");
+            int maxHops;
+            try {
+                maxHops = maxHopsText.isEmpty() ? ShortestPath.UNLIMITED : Integer.parseInt(maxHopsText);
+            } catch (NumberFormatException ex) {
+                showAlert("Invalid Hops", "Maximum hops must be a whole number.", Alert.AlertType.ERROR);
+                return;
             }
-            postsArea.setText(content.toString());
+
+            whenDone(networkService.query(findPathButton, network -> network.shortestPath(user1, user2, maxHops)), progress, path -> {
+                if (path.isEmpty()) {
+                    pathArea.setText("No connection found between these travelers.");
+                    return;
+                }
+
+                StringBuilder content = new StringBuilder((path.size() - 1) + " degrees of separation:\n");
+                for (UserDirectory traveler : path) {
+                    content.append(traveler.getName()).append(" (").append(traveler.getUsername()).append(")\n");
+                }
+                pathArea.setText(content.toString());
+            });
         });
 
-        layout.getChildren().addAll(title, usernameField, viewPostsButton, postsArea);
+        layout.getChildren().addAll(title, user1Field, user2Field, maxHopsField, findPathButton, progress, pathArea);
 
-        Tab tab = new Tab("Traveler Stories", layout);
+        Tab tab = new Tab("Degrees of Separation", layout);
         tab.setClosable(false);
         return tab;
     }
 
+    private Tab createSearchTab() {
+        VBox layout = new VBox(20);
+        layout.setAlignment(Pos.CENTER);
+        layout.setPadding(new Insets(40));
+        layout.setStyle("-fx-background-color: rgba(255, 255, 255, 0.9); -fx-background-radius: 20;");
+
+        Label title = createTitle("Search Stories");
+
+        TextField queryField = createStyledTextField("Words, \"exact phrase\", or alternatives joined by OR");
+
+        Button searchButton = createStyledButton("Search", PRIMARY_COLOR);
+        ProgressIndicator progress = createProgressIndicator();
+        TextArea resultsArea = new TextArea();
+        resultsArea.setEditable(false);
+        resultsArea.setPrefWidth(300);
+        resultsArea.setPrefHeight(150);
+        resultsArea.setStyle("-fx-background-color: white; -fx-border-color: " + PRIMARY_COLOR + "; " +
+                "-fx-border-radius: 5; -fx-background-radius: 5; -fx-padding: 10; -fx-font-size: 14px;");
+
+        searchButton.setOnAction(e -> {
+            String query = queryField.getText().trim();
+
+            if (query.isEmpty()) {
+                showAlert("Missing Information", "Please enter something to search for!", Alert.AlertType.ERROR);
+                return;
+            }
+
+            whenDone(networkService.query(searchButton, network -> {
+                List<Post> found = network.searchPosts(query);
+                if (found.isEmpty()) {
+                    return "No stories match your search.";
+                }
+
+                StringBuilder content = new StringBuilder();
+                for (Post post : found) {
+                    content.append(post.getAuthor().getName()).append(": ").append(post.getText()).append("\n\n");
+                }
+                return content.toString();
+            }), progress, resultsArea::setText);
+        });
+
+        layout.getChildren().addAll(title, queryField, searchButton, progress, resultsArea);
+
+        Tab tab = new Tab("Search Stories", layout);
+        tab.setClosable(false);
+        return tab;
+    }
+
+    // One page of a user list with the text of each row already worked out
+    private static final class DescribedPage {
+        final List<String> rows;
+        final String nextCursor;
+
+        DescribedPage(List<String> rows, String nextCursor) {
+            this.rows = rows;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    // Rows of a list filled one page at a time as it is scrolled towards the end
+    private static final class PagedUserList {
+        private final ObservableList<String> rows = FXCollections.observableArrayList();
+        // Completes on the FX thread
+        private final Function<String, CompletableFuture<DescribedPage>> fetchPage;
+        private final Runnable onFirstPage;
+        private String cursor;
+        private boolean exhausted;
+        private boolean loadPending;
+
+        PagedUserList(Function<String, CompletableFuture<DescribedPage>> fetchPage, Runnable onFirstPage) {
+            this.fetchPage = fetchPage;
+            this.onFirstPage = onFirstPage;
+            loadNextPage();
+        }
+
+        // Called for each row a cell shows
+        void shown(int index) {
+            if (!exhausted && !loadPending && index >= rows.size() - LIST_PREFETCH_ROWS) {
+                loadNextPage();
+            }
+        }
+
+        private void loadNextPage() {
+            loadPending = true;
+            boolean first = cursor == null;
+            fetchPage.apply(cursor).whenComplete((page, error) -> {
+                loadPending = false;
+                if (error != null) {
+                    exhausted = true;
+                    return;
+                }
+                rows.addAll(page.rows);
+                cursor = page.nextCursor;
+                exhausted = cursor == null;
+                if (first) {
+                    onFirstPage.run();
+                }
+            });
+        }
+    }
+
+    // Only the fetched pages are described, so the work done depends on how
+    // far the list is scrolled, not on the size of the network. describe runs
+    // with the page query in the background; cells only set the text.
+    private void showUserList(String title, Function<String, UserPage> fetchPage, Function<UserDirectory, String> describe) {
+        ListView<String> listView = new ListView<>();
+        listView.setPrefSize(500, 400);
+        listView.setPlaceholder(new ProgressIndicator());
+        PagedUserList list = new PagedUserList(
+                cursor -> networkService.query(null, network -> describePage(fetchPage.apply(cursor), describe)),
+                () -> listView.setPlaceholder(new Label("No travelers yet.")));
+        listView.setItems(list.rows);
+        listView.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(String row, boolean empty) {
+                super.updateItem(row, empty);
+                if (empty || row == null) {
+                    setText(null);
+                    return;
+                }
+                setText(row);
+                list.shown(getIndex());
+            }
+        });
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(title);
+        alert.setHeaderText(null);
+
+        DialogPane dialogPane = alert.getDialogPane();
+        dialogPane.setContent(listView);
+        dialogPane.setStyle(
+                "-fx-background-color: white;" +
+                        "-fx-padding: 20;" +
+                        "-fx-effect: dropshadow(gaussian, rgba(0, 0, 0, 0.2), 10, 0, 0, 2);"
+        );
+
+        alert.showAndWait();
+    }
+
+    private static DescribedPage describePage(UserPage page, Function<UserDirectory, String> describe) {
+        List<String> rows = new ArrayList<>(page.getUsers().size());
+        for (UserDirectory user : page.getUsers()) {
+            rows.add(describe.apply(user));
+        }
+        return new DescribedPage(rows, page.getNextCursor());
+    }
+
+    // A user's name and the first few of their friends; looks the friends up,
+    // so only call it from a background query
+    private String describeConnections(UserDirectory user) {
+        List<UserDirectory> friends = socialNetwork.listFriends(user.getUsername(), null, FRIEND_PREVIEW).getUsers();
+        StringBuilder content = new StringBuilder(user.getName()).append(" -> ");
+        for (int i = 0; i < friends.size(); i++) {
+            if (i > 0) {
+                content.append(", ");
+            }
+            content.append(friends.get(i).getName());
+        }
+        int more = user.getFriends().size() - friends.size();
+        if (more > 0) {
+            content.append(" and ").append(more).append(" more");
+        }
+        return content.toString();
+    }
+
+    // Spinner shown while a request started from the pane runs
+    private ProgressIndicator createProgressIndicator() {
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setMaxSize(32, 32);
+        progress.setVisible(false);
+        return progress;
+    }
+
+    // Shows the spinner (if any) until the future finishes, then hands the
+    // result to onResult on the FX thread. A superseded request leaves the
+    // spinner to the request that replaced it.
+    private <T> void whenDone(CompletableFuture<T> future, ProgressIndicator progress, Consumer<T> onResult) {
+        if (progress != null) {
+            progress.setVisible(true);
+        }
+        future.whenComplete((result, error) -> {
+            if (error instanceof CancellationException) {
+                return;
+            }
+            if (progress != null) {
+                progress.setVisible(false);
+            }
+            if (error != null) {
+                showAlert("Something Went Wrong", String.valueOf(error.getMessage()), Alert.AlertType.ERROR);
+                return;
+            }
+            onResult.accept(result);
+        });
+    }
+
     private void showAlert(String title, String message, Alert.AlertType alertType) {
         Alert alert = new Alert(alertType);
         alert.setTitle(title);
@@ -0,0 +1,77 @@
+package socialMediaPlatform;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A timestamped post. Ids are handed out in creation order within one run and
+// only break ties between posts with the same timestamp. The text lives in the
+// PostArena; the post holds a handle to it until its author's timeline evicts it.
+final class Post {
+
+    // Newer posts first
+    static final Comparator<Post> NEWEST_FIRST = (a, b) -> {
+        if (a.timestamp != b.timestamp) {
+            return Long.compare(b.timestamp, a.timestamp);
+        }
+        return Long.compare(b.id, a.id);
+    };
+
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final long id;
+    private final UserDirectory author;
+    private final long timestamp;
+    private final PostArena arena;
+    private long textHandle;
+
+    Post(UserDirectory author, String text, long timestamp) {
+        this.id = NEXT_ID.incrementAndGet();
+        this.author = author;
+        this.timestamp = timestamp;
+        this.arena = PostArena.shared();
+        this.textHandle = arena.intern(text);
+    }
+
+    long id() {
+        return id;
+    }
+
+    public UserDirectory getAuthor() {
+        return author;
+    }
+
+    // Null once the post has been evicted
+    public String getText() {
+        long handle;
+        synchronized (this) {
+            handle = textHandle;
+        }
+        return handle == PostArena.NO_TEXT ? null : arena.text(handle);
+    }
+
+    synchronized boolean isEvicted() {
+        return textHandle == PostArena.NO_TEXT;
+    }
+
+    // Releases the text; called once the author's timeline no longer holds the post
+    void evict() {
+        long handle;
+        synchronized (this) {
+            handle = textHandle;
+            textHandle = PostArena.NO_TEXT;
+        }
+        if (handle != PostArena.NO_TEXT) {
+            arena.release(handle);
+        }
+    }
+
+    // Milliseconds since the epoch; 0 for posts from before posts were timestamped
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return author.getName() + ": " + getText();
+    }
+}
@@ -0,0 +1,301 @@
+package socialMediaPlatform;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Off-heap store for post bodies. Texts are written as UTF-8 into large direct
+// buffers, so millions of posts add no String objects for the GC to trace.
+// Identical texts are stored once: a hash index finds an existing copy and
+// bumps its reference count. Posts refer to a text by a handle (entry slot
+// plus generation), and entries record where their bytes are, so the
+// compactor can move bytes without touching any post. Once released bytes
+// outweigh live ones, live texts are copied into fresh buffers and the old
+// ones are dropped.
+final class PostArena {
+
+    static final long NO_TEXT = -1;
+
+    private static final int SEGMENT_BYTES = 4 << 20;
+    // Below this much garbage compaction is not worth a pass
+    private static final long MIN_GARBAGE_BYTES = 1 << 20;
+    private static final int EMPTY = -1;
+
+    // Posts are created by users loaded anywhere, so one arena serves the process
+    private static final PostArena SHARED = new PostArena(SEGMENT_BYTES, MIN_GARBAGE_BYTES);
+
+    // Point-in-time counters for monitoring
+    static final class Stats {
+        final int texts;
+        final long liveBytes;
+        final long garbageBytes;
+        final long reservedBytes;
+        final long dedupeHits;
+        final long compactions;
+
+        Stats(int texts, long liveBytes, long garbageBytes, long reservedBytes, long dedupeHits, long compactions) {
+            this.texts = texts;
+            this.liveBytes = liveBytes;
+            this.garbageBytes = garbageBytes;
+            this.reservedBytes = reservedBytes;
+            this.dedupeHits = dedupeHits;
+            this.compactions = compactions;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("texts=%d live=%dB garbage=%dB reserved=%dB dedupeHits=%d compactions=%d",
+                    texts, liveBytes, garbageBytes, reservedBytes, dedupeHits, compactions);
+        }
+    }
+
+    private final int segmentBytes;
+    private final long minGarbageBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer current;
+
+    // Entry table, indexed by slot
+    private int[] entrySegment = new int[1024];
+    private int[] entryOffset = new int[1024];
+    private int[] entryLength = new int[1024];
+    private int[] entryRefs = new int[1024];
+    private int[] entryHash = new int[1024];
+    private int[] entryGeneration = new int[1024];
+    private int slotCount;
+    private int[] freeSlots = new int[64];
+    private int freeCount;
+
+    // Open-addressing hash index of live slots
+    private int[] index = new int[2048];
+    private int indexSize;
+
+    private long liveBytes;
+    private long garbageBytes;
+    private long reservedBytes;
+    private long dedupeHits;
+    private long compactions;
+
+    PostArena(int segmentBytes, long minGarbageBytes) {
+        this.segmentBytes = segmentBytes;
+        this.minGarbageBytes = minGarbageBytes;
+        Arrays.fill(index, EMPTY);
+    }
+
+    static PostArena shared() {
+        return SHARED;
+    }
+
+    // Stores the text, or takes another reference to an identical one
+    long intern(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        lock.writeLock().lock();
+        try {
+            int mask = index.length - 1;
+            int position = hash & mask;
+            while (index[position] != EMPTY) {
+                int slot = index[position];
+                if (entryHash[slot] == hash && sameBytes(slot, bytes)) {
+                    entryRefs[slot]++;
+                    dedupeHits++;
+                    return handle(slot);
+                }
+                position = (position + 1) & mask;
+            }
+
+            int slot = newSlot();
+            ByteBuffer segment = allocate(bytes.length);
+            entrySegment[slot] = segments.size() - 1;
+            entryOffset[slot] = segment.position();
+            entryLength[slot] = bytes.length;
+            entryRefs[slot] = 1;
+            entryHash[slot] = hash;
+            segment.put(bytes);
+            liveBytes += bytes.length;
+
+            index[position] = slot;
+            if (++indexSize * 2 > index.length) {
+                rehash(index.length * 2);
+            }
+            return handle(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Decoded text, or null if the handle has been released and its slot reused
+    String text(long handle) {
+        int slot = (int) handle;
+        lock.readLock().lock();
+        try {
+            if (!isCurrent(handle)) {
+                return null;
+            }
+            byte[] bytes = new byte[entryLength[slot]];
+            segments.get(entrySegment[slot]).get(entryOffset[slot], bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Drops one reference; the last one frees the entry and may trigger compaction
+    void release(long handle) {
+        int slot = (int) handle;
+        lock.writeLock().lock();
+        try {
+            if (!isCurrent(handle) || --entryRefs[slot] > 0) {
+                return;
+            }
+            removeFromIndex(slot);
+            entryGeneration[slot]++;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+            liveBytes -= entryLength[slot];
+            garbageBytes += entryLength[slot];
+            if (garbageBytes > Math.max(minGarbageBytes, liveBytes)) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    Stats stats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(indexSize, liveBytes, garbageBytes, reservedBytes, dedupeHits, compactions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copies every live text into fresh segments; caller holds the write lock
+    private void compact() {
+        List<ByteBuffer> old = new ArrayList<>(segments);
+        segments.clear();
+        current = null;
+        reservedBytes = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (entryRefs[slot] <= 0) {
+                continue;
+            }
+            ByteBuffer from = old.get(entrySegment[slot]);
+            int length = entryLength[slot];
+            ByteBuffer to = allocate(length);
+            int offset = to.position();
+            to.put(to.position(), from, entryOffset[slot], length);
+            to.position(offset + length);
+            entrySegment[slot] = segments.size() - 1;
+            entryOffset[slot] = offset;
+        }
+        // The old direct buffers are freed once unreachable
+        garbageBytes = 0;
+        compactions++;
+    }
+
+    // Segment with room for length more bytes at its position
+    private ByteBuffer allocate(int length) {
+        if (current == null || current.remaining() < length) {
+            current = ByteBuffer.allocateDirect(Math.max(segmentBytes, length));
+            segments.add(current);
+            reservedBytes += current.capacity();
+        }
+        return current;
+    }
+
+    private int newSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == entryRefs.length) {
+            int capacity = slotCount * 2;
+            entrySegment = Arrays.copyOf(entrySegment, capacity);
+            entryOffset = Arrays.copyOf(entryOffset, capacity);
+            entryLength = Arrays.copyOf(entryLength, capacity);
+            entryRefs = Arrays.copyOf(entryRefs, capacity);
+            entryHash = Arrays.copyOf(entryHash, capacity);
+            entryGeneration = Arrays.copyOf(entryGeneration, capacity);
+        }
+        return slotCount++;
+    }
+
+    private boolean sameBytes(int slot, byte[] bytes) {
+        if (entryLength[slot] != bytes.length) {
+            return false;
+        }
+        ByteBuffer segment = segments.get(entrySegment[slot]);
+        int offset = entryOffset[slot];
+        for (int i = 0; i < bytes.length; i++) {
+            if (segment.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Linear-probing delete: pull later entries of the run back into the hole
+    private void removeFromIndex(int slot) {
+        int mask = index.length - 1;
+        int hole = entryHash[slot] & mask;
+        while (index[hole] != slot) {
+            hole = (hole + 1) & mask;
+        }
+        int position = hole;
+        while (true) {
+            position = (position + 1) & mask;
+            int moving = index[position];
+            if (moving == EMPTY) {
+                break;
+            }
+            int home = entryHash[moving] & mask;
+            // Move it unless its home lies cyclically in (hole, position]
+            boolean stays = hole <= position ? (hole < home && home <= position) : (hole < home || home <= position);
+            if (!stays) {
+                index[hole] = moving;
+                hole = position;
+            }
+        }
+        index[hole] = EMPTY;
+        indexSize--;
+    }
+
+    private void rehash(int capacity) {
+        int[] grown = new int[capacity];
+        Arrays.fill(grown, EMPTY);
+        int mask = capacity - 1;
+        for (int slot : index) {
+            if (slot == EMPTY) {
+                continue;
+            }
+            int position = entryHash[slot] & mask;
+            while (grown[position] != EMPTY) {
+                position = (position + 1) & mask;
+            }
+            grown[position] = slot;
+        }
+        index = grown;
+    }
+
+    private boolean isCurrent(long handle) {
+        int slot = (int) handle;
+        return handle != NO_TEXT && slot >= 0 && slot < slotCount
+                && entryGeneration[slot] == (int) (handle >>> 32) && entryRefs[slot] > 0;
+    }
+
+    private long handle(int slot) {
+        return ((long) entryGeneration[slot] << 32) | slot;
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
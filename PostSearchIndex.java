@@ -0,0 +1,441 @@
+package socialMediaPlatform;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Inverted index over post texts. Each term maps to a postings list of
+// (document, positions) pairs. Document ids only grow, so the list is kept
+// as one compressed byte stream: the gap to the previous document, the
+// number of positions, then the gaps between positions, each as a varint.
+// A typical entry takes two or three bytes.
+//
+// Queries: words are ANDed, OR separates alternatives, and "quoted words"
+// must appear next to each other in that order. Matches are ranked newest
+// first. Posts are indexed oldest first, so normally the highest document ids
+// are the newest and a query stops after the first limit live matches; a post
+// that arrives out of order switches ranking to a heap over all matches. Evicted posts are marked deleted and left in the postings until
+// they make up half the index, at which point the postings are rebuilt from
+// the live posts. The index is filled from every user's timeline on the first
+// search and kept current from then on, also across compactions, which keep
+// the same Post objects.
+class PostSearchIndex {
+
+    static final int DEFAULT_LIMIT = 20;
+
+    // Longer runs of letters are cut, so one huge token cannot bloat the dictionary
+    private static final int MAX_TERM_LENGTH = 32;
+    private static final int MIN_REBUILD_DELETIONS = 1024;
+
+    private static final class Postings {
+        byte[] data = new byte[8];
+        int length;
+        int lastDoc = -1;
+        int docCount;
+
+        void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        void add(int doc, int[] positions, int count) {
+            writeVarint(doc - lastDoc);
+            writeVarint(count);
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                writeVarint(positions[i] - previous);
+                previous = positions[i];
+            }
+            lastDoc = doc;
+            docCount++;
+        }
+    }
+
+    // Sequential decoder over one postings list
+    private static final class Cursor {
+        private final Postings postings;
+        private int offset;
+        int doc = -1;
+        int[] positions = new int[4];
+        int positionCount;
+
+        Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        // Moves to the next document; false at the end
+        boolean next() {
+            if (offset >= postings.length) {
+                return false;
+            }
+            doc += readVarint();
+            positionCount = readVarint();
+            if (positions.length < positionCount) {
+                positions = new int[positionCount];
+            }
+            int position = 0;
+            for (int i = 0; i < positionCount; i++) {
+                position += readVarint();
+                positions[i] = position;
+            }
+            return true;
+        }
+
+        // Moves to the first document >= target; false at the end
+        boolean advance(int target) {
+            while (doc < target) {
+                if (!next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean hasPosition(int position) {
+            return Arrays.binarySearch(positions, 0, positionCount, position) >= 0;
+        }
+
+        private int readVarint() {
+            byte[] data = postings.data;
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Postings> terms = new HashMap<>();
+    private final Map<Post, Integer> docIds = new HashMap<>();
+    private Post[] docs = new Post[1024];
+    private int docCount;
+    private BitSet deleted = new BitSet();
+    private int deletedCount;
+    private boolean built;
+    // Whether document order is still oldest-first
+    private boolean ordered = true;
+    private Post lastIndexed;
+
+    // Call after the post joined its author's timeline
+    void postAdded(Post post) {
+        lock.writeLock().lock();
+        try {
+            // Before the first search there is nothing to keep current
+            if (built) {
+                add(post);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Call after the post fell out of its author's timeline
+    void postRemoved(Post post) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = docIds.remove(post);
+            if (doc == null) {
+                return;
+            }
+            deleted.set(doc);
+            docs[doc] = null;
+            deletedCount++;
+            if (deletedCount >= MIN_REBUILD_DELETIONS && deletedCount * 2 > docCount) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Drops everything, e.g. after the users were re-materialized; the next
+    // search indexes the timelines again
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            built = false;
+            reset(0);
+            ordered = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Matching posts, newest first
+    List<Post> search(FriendGraph graph, String query, int limit) {
+        List<List<List<String>>> alternatives = parse(query);
+        if (alternatives.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        ensureBuilt(graph);
+        lock.readLock().lock();
+        try {
+            BitSet matches = new BitSet();
+            for (List<List<String>> clause : alternatives) {
+                matchClause(clause, matches);
+            }
+            matches.andNot(deleted);
+
+            if (ordered) {
+                List<Post> newest = new ArrayList<>(Math.min(limit, matches.cardinality()));
+                for (int doc = matches.length() - 1; doc >= 0 && newest.size() < limit; doc = matches.previousSetBit(doc - 1)) {
+                    Post post = docs[doc];
+                    if (post != null && !post.isEvicted()) {
+                        newest.add(post);
+                    }
+                }
+                return newest;
+            }
+
+            PriorityQueue<Post> best = new PriorityQueue<>(Post.NEWEST_FIRST.reversed());
+            for (int doc = matches.nextSetBit(0); doc >= 0; doc = matches.nextSetBit(doc + 1)) {
+                Post post = docs[doc];
+                if (post == null || post.isEvicted()) {
+                    continue;
+                }
+                best.add(post);
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            Post[] ordered = new Post[best.size()];
+            for (int i = ordered.length - 1; i >= 0; i--) {
+                ordered[i] = best.poll();
+            }
+            return Arrays.asList(ordered);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lowercased runs of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        int i = 0;
+        while (i <= text.length()) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (token.length() < MAX_TERM_LENGTH) {
+                    token.appendCodePoint(Character.toLowerCase(codePoint));
+                }
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+            i += Character.charCount(codePoint);
+        }
+        return tokens;
+    }
+
+    // OR-separated clauses, each a list of phrases (a single word is a one-word phrase)
+    private static List<List<List<String>>> parse(String query) {
+        List<List<List<String>>> alternatives = new ArrayList<>();
+        List<List<String>> clause = new ArrayList<>();
+        boolean quoted = false;
+        for (String part : query.split("\"", -1)) {
+            if (quoted) {
+                List<String> phrase = tokenize(part);
+                if (!phrase.isEmpty()) {
+                    clause.add(phrase);
+                }
+            } else {
+                // OR is only an operator in capitals, so "or" can still be searched for
+                for (String word : part.trim().split("\\s+")) {
+                    if (word.equals("OR")) {
+                        if (!clause.isEmpty()) {
+                            alternatives.add(clause);
+                        }
+                        clause = new ArrayList<>();
+                    } else {
+                        for (String token : tokenize(word)) {
+                            clause.add(List.of(token));
+                        }
+                    }
+                }
+            }
+            quoted = !quoted;
+        }
+        if (!clause.isEmpty()) {
+            alternatives.add(clause);
+        }
+        return alternatives;
+    }
+
+    // Adds the documents containing every phrase of the clause to matches
+    private void matchClause(List<List<String>> clause, BitSet matches) {
+        // Every distinct term gets one cursor; the rarest drives the intersection
+        Map<String, Cursor> cursors = new HashMap<>();
+        Cursor rarest = null;
+        for (List<String> phrase : clause) {
+            for (String term : phrase) {
+                Postings postings = terms.get(term);
+                if (postings == null) {
+                    return;
+                }
+                Cursor cursor = cursors.computeIfAbsent(term, t -> new Cursor(postings));
+                if (rarest == null || postings.docCount < rarest.postings.docCount) {
+                    rarest = cursor;
+                }
+            }
+        }
+        if (rarest == null) {
+            return;
+        }
+
+        candidates:
+        while (rarest.next()) {
+            int doc = rarest.doc;
+            for (Cursor cursor : cursors.values()) {
+                if (!cursor.advance(doc)) {
+                    return;
+                }
+                if (cursor.doc != doc) {
+                    continue candidates;
+                }
+            }
+            for (List<String> phrase : clause) {
+                if (phrase.size() > 1 && !containsPhrase(phrase, cursors)) {
+                    continue candidates;
+                }
+            }
+            matches.set(doc);
+        }
+    }
+
+    // All cursors are on the same document
+    private static boolean containsPhrase(List<String> phrase, Map<String, Cursor> cursors) {
+        Cursor first = cursors.get(phrase.get(0));
+        for (int p = 0; p < first.positionCount; p++) {
+            int start = first.positions[p];
+            boolean found = true;
+            for (int i = 1; i < phrase.size() && found; i++) {
+                found = cursors.get(phrase.get(i)).hasPosition(start + i);
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensureBuilt(FriendGraph graph) {
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                return;
+            }
+            // Posts added meanwhile wait for the lock and are then found already indexed
+            built = true;
+            List<Post> posts = new ArrayList<>();
+            for (int id = 0; id < graph.size(); id++) {
+                Collections.addAll(posts, graph.user(id).timeline());
+            }
+            posts.sort(Post.NEWEST_FIRST.reversed());
+            for (Post post : posts) {
+                add(post);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void add(Post post) {
+        String text = post.getText();
+        if (text != null && !post.isEvicted() && !docIds.containsKey(post)) {
+            index(post, text);
+        }
+    }
+
+    private void reset(int capacity) {
+        terms = new HashMap<>();
+        docIds.clear();
+        docs = new Post[Math.max(1024, capacity)];
+        docCount = 0;
+        lastIndexed = null;
+        deleted = new BitSet();
+        deletedCount = 0;
+    }
+
+    // Caller holds the write lock
+    private void index(Post post, String text) {
+        int doc = docCount++;
+        if (lastIndexed != null && Post.NEWEST_FIRST.compare(post, lastIndexed) > 0) {
+            ordered = false;
+        }
+        lastIndexed = post;
+        if (doc == docs.length) {
+            docs = Arrays.copyOf(docs, doc * 2);
+        }
+        docs[doc] = post;
+        docIds.put(post, doc);
+
+        // Positions of each distinct term, in order
+        List<String> tokens = tokenize(text);
+        Map<String, int[]> positions = new LinkedHashMap<>();
+        Map<String, Integer> counts = new HashMap<>();
+        for (int position = 0; position < tokens.size(); position++) {
+            String token = tokens.get(position);
+            int count = counts.getOrDefault(token, 0);
+            int[] list = positions.get(token);
+            if (list == null || list.length == count) {
+                list = list == null ? new int[2] : Arrays.copyOf(list, count * 2);
+                positions.put(token, list);
+            }
+            list[count] = position;
+            counts.put(token, count + 1);
+        }
+        for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), t -> new Postings())
+                    .add(doc, entry.getValue(), counts.get(entry.getKey()));
+        }
+    }
+
+    // Re-indexes the live posts oldest first under fresh, dense document ids
+    private void rebuild() {
+        Post[] live = new Post[docCount - deletedCount];
+        int kept = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (docs[doc] != null) {
+                live[kept++] = docs[doc];
+            }
+        }
+        if (!ordered) {
+            Arrays.sort(live, 0, kept, Post.NEWEST_FIRST.reversed());
+            ordered = true;
+        }
+        reset(kept);
+        for (int i = 0; i < kept; i++) {
+            add(live[i]);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package socialMediaPlatform;
+
+import java.util.Arrays;
+
+// Bounded list of posts kept newest first in a ring buffer. Adding to a full
+// timeline overwrites the oldest slot instead of shifting anything, and the
+// capacity can be changed on any add. Used both for a user's own posts and
+// for the feed inboxes that FeedService fans posts out to. A user's own
+// timeline owns its posts: a post that falls out of it is evicted, which
+// frees its text in the PostArena.
+final class PostTimeline {
+
+    static final int DEFAULT_CAPACITY = 5;
+
+    private static final Post[] EMPTY = new Post[0];
+
+    private final boolean ownsPosts;
+    private Post[] ring = EMPTY;
+    // Slot of the newest post; older posts follow at increasing indexes
+    private int head;
+    private int size;
+
+    // A feed inbox, which only refers to posts owned elsewhere
+    PostTimeline() {
+        this(false);
+    }
+
+    PostTimeline(boolean ownsPosts) {
+        this.ownsPosts = ownsPosts;
+    }
+
+    // Inserts in NEWEST_FIRST order and trims to capacity. Returns false if the
+    // post was already present or is older than everything in a full timeline.
+    synchronized boolean add(Post post, int capacity) {
+        if (capacity <= 0) {
+            return false;
+        }
+        if (ring.length != capacity) {
+            resize(capacity);
+        }
+        // Posts almost always arrive newest, so search from the head
+        int position = 0;
+        while (position < size) {
+            Post current = at(position);
+            if (current == post) {
+                return false;
+            }
+            if (Post.NEWEST_FIRST.compare(post, current) < 0) {
+                break;
+            }
+            position++;
+        }
+        if (position == capacity) {
+            discard(post);
+            return false;
+        }
+        if (size < capacity) {
+            size++;
+        } else {
+            discard(at(capacity - 1));
+        }
+        // Shift the newer posts one slot towards the new head
+        head = (head - 1 + capacity) % capacity;
+        for (int i = 0; i < position; i++) {
+            ring[(head + i) % capacity] = ring[(head + i + 1) % capacity];
+        }
+        ring[(head + position) % capacity] = post;
+        return true;
+    }
+
+    // Adds a post read back from storage; never drops anything
+    synchronized void restore(Post post) {
+        add(post, size < ring.length ? ring.length : Math.max(DEFAULT_CAPACITY, ring.length * 2));
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Copy of the posts, newest first
+    synchronized Post[] newestFirst() {
+        Post[] copy = new Post[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = at(i);
+        }
+        return copy;
+    }
+
+    // Empties the timeline, evicting the posts it owns; for a user that is being dropped
+    synchronized void clear() {
+        for (int i = 0; i < size; i++) {
+            discard(at(i));
+        }
+        ring = EMPTY;
+        head = 0;
+        size = 0;
+    }
+
+    private void discard(Post post) {
+        if (ownsPosts) {
+            post.evict();
+        }
+    }
+
+    private Post at(int position) {
+        return ring[(head + position) % ring.length];
+    }
+
+    // Keeps the newest posts that fit
+    private void resize(int capacity) {
+        Post[] resized = new Post[capacity];
+        int kept = Math.min(size, capacity);
+        for (int i = 0; i < kept; i++) {
+            resized[i] = at(i);
+        }
+        for (int i = kept; i < size; i++) {
+            discard(at(i));
+        }
+        ring = resized;
+        head = 0;
+        size = kept;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return Arrays.toString(newestFirst());
+    }
+}
@@ -0,0 +1,192 @@
+package socialMediaPlatform;
+
+import java.util.*;
+
+// Bounded LRU cache of each user's top friend suggestions. A friendship change
+// between a and b can only alter the suggestions of users within two hops of
+// a or b (their mutual counts, or a/b's degree used as a tie-break), so only
+// those cached entries are marked stale and recomputed on their next read;
+// everything else keeps being served as an O(K) lookup.
+class RecommendationCache {
+
+    // Point-in-time counters for monitoring
+    static final class Stats {
+        final long hits;
+        final long misses;
+        final long staleRefreshes;
+        final long invalidations;
+        final long evictions;
+        final int size;
+        final int staleEntries;
+
+        Stats(long hits, long misses, long staleRefreshes, long invalidations, long evictions, int size, int staleEntries) {
+            this.hits = hits;
+            this.misses = misses;
+            this.staleRefreshes = staleRefreshes;
+            this.invalidations = invalidations;
+            this.evictions = evictions;
+            this.size = size;
+            this.staleEntries = staleEntries;
+        }
+
+        double hitRate() {
+            long reads = hits + misses + staleRefreshes;
+            return reads == 0 ? 0 : (double) hits / reads;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("size=%d stale=%d hits=%d misses=%d staleRefreshes=%d invalidations=%d evictions=%d hitRate=%.2f",
+                    size, staleEntries, hits, misses, staleRefreshes, invalidations, evictions, hitRate());
+        }
+    }
+
+    private final int capacity;
+    private final int depth;
+    private final LinkedHashMap<Integer, List<FriendSuggestion>> entries;
+    private final Set<Integer> stale = new HashSet<>();
+    // Bumped by every change; a computation that overlapped one is not cached
+    private long epoch;
+    private long hits;
+    private long misses;
+    private long staleRefreshes;
+    private long invalidations;
+    private long evictions;
+
+    // Keeps up to capacity users, each with their best depth suggestions
+    RecommendationCache(int capacity, int depth) {
+        this.capacity = capacity;
+        this.depth = depth;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<FriendSuggestion>> eldest) {
+                if (size() <= RecommendationCache.this.capacity) {
+                    return false;
+                }
+                stale.remove(eldest.getKey());
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    List<FriendSuggestion> get(FriendGraph graph, int userId, int limit) {
+        if (limit > depth) {
+            synchronized (this) {
+                misses++;
+            }
+            return FriendRecommender.suggest(graph, userId, limit);
+        }
+
+        long startEpoch;
+        synchronized (this) {
+            boolean wasStale = stale.remove(userId);
+            if (wasStale) {
+                entries.remove(userId);
+            }
+            List<FriendSuggestion> cached = entries.get(userId);
+            if (cached != null) {
+                hits++;
+                return cached.size() <= limit ? cached : cached.subList(0, limit);
+            }
+            if (wasStale) {
+                staleRefreshes++;
+            } else {
+                misses++;
+            }
+            startEpoch = epoch;
+        }
+
+        List<FriendSuggestion> fresh = FriendRecommender.suggest(graph, userId, depth);
+        synchronized (this) {
+            if (epoch == startEpoch) {
+                entries.put(userId, fresh);
+            }
+        }
+        return fresh.size() <= limit ? fresh : fresh.subList(0, limit);
+    }
+
+    // Call after the edge between a and b has been added or removed
+    synchronized void friendshipChanged(FriendGraph graph, int a, int b) {
+        epoch++;
+        if (entries.isEmpty()) {
+            return;
+        }
+        // Walk the two-hop neighbourhoods when that is cheaper than testing every cached user
+        long limit = entries.size();
+        long walkCost = twoHopCost(graph, a, limit);
+        if (walkCost <= limit) {
+            walkCost += twoHopCost(graph, b, limit - walkCost);
+        }
+        if (walkCost <= limit) {
+            markTwoHops(graph, a);
+            markTwoHops(graph, b);
+            return;
+        }
+        for (Integer id : entries.keySet()) {
+            if (withinTwoHops(graph, id, a) || withinTwoHops(graph, id, b)) {
+                markStale(id);
+            }
+        }
+    }
+
+    // Drops everything, e.g. after ids were reassigned
+    synchronized void clear() {
+        epoch++;
+        entries.clear();
+        stale.clear();
+    }
+
+    synchronized Stats stats() {
+        return new Stats(hits, misses, staleRefreshes, invalidations, evictions, entries.size(), stale.size());
+    }
+
+    // Counted only until it passes limit, so a hub's friends are not listed
+    // just to find out that walking them costs too much
+    private static long twoHopCost(FriendGraph graph, int id, long limit) {
+        long cost = 1 + graph.degree(id);
+        if (cost > limit) {
+            return cost;
+        }
+        for (int friend : graph.neighbors(id)) {
+            cost += graph.degree(friend);
+            if (cost > limit) {
+                break;
+            }
+        }
+        return cost;
+    }
+
+    private void markTwoHops(FriendGraph graph, int id) {
+        markStale(id);
+        for (int friend : graph.neighbors(id)) {
+            markStale(friend);
+            for (int second : graph.neighbors(friend)) {
+                markStale(second);
+            }
+        }
+    }
+
+    private static boolean withinTwoHops(FriendGraph graph, int id, int target) {
+        if (id == target || graph.connected(id, target)) {
+            return true;
+        }
+        // Looks the smaller user's friends up in the other's list, so a hub's
+        // friend list is searched rather than listed
+        int small = graph.degree(id) <= graph.degree(target) ? id : target;
+        int other = small == id ? target : id;
+        for (int friend : graph.neighbors(small)) {
+            if (graph.connected(friend, other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // containsKey does not count as an access, so marking keeps the LRU order
+    private void markStale(int id) {
+        if (entries.containsKey(id) && stale.add(id)) {
+            invalidations++;
+        }
+    }
+}
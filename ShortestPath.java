@@ -0,0 +1,125 @@
+package socialMediaPlatform;
+
+import java.util.Arrays;
+
+// Bidirectional BFS between two users. Each round expands one whole level of
+// whichever side has the smaller frontier, so the two searches meet after
+// roughly b^(d/2) visits per side instead of b^d from one side. Visited ids
+// and their parents live in hash maps sized to what was actually touched.
+final class ShortestPath {
+
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private static final int[] NO_PATH = new int[0];
+    // Returned by Side.expand when the search runs out of budget
+    private static final int GAVE_UP = -3;
+
+    private ShortestPath() {
+    }
+
+    // Ids from source to target inclusive, or an empty array if they are not
+    // connected within maxHops
+    static int[] find(FriendGraph graph, int source, int target, int maxHops) {
+        return find(graph, source, target, maxHops, Long.MAX_VALUE);
+    }
+
+    // Same, but gives up and returns an empty array once the two sides would
+    // read more than maxScanned friend ids between them
+    static int[] find(FriendGraph graph, int source, int target, int maxHops, long maxScanned) {
+        if (source == target) {
+            return new int[]{source};
+        }
+        Side forward = new Side(source);
+        Side backward = new Side(target);
+        int hops = 0;
+        while (hops < maxHops && forward.size > 0 && backward.size > 0) {
+            Side expanding = forward.size <= backward.size ? forward : backward;
+            Side other = expanding == forward ? backward : forward;
+            int meeting = expanding.expand(graph, other, maxScanned);
+            if (meeting == GAVE_UP) {
+                return NO_PATH;
+            }
+            hops++;
+            if (meeting != IntIntMap.MISSING) {
+                return join(forward, backward, meeting, hops);
+            }
+        }
+        return NO_PATH;
+    }
+
+    // The first meeting found is on a shortest path: any user the other side
+    // reached before its current frontier has had all its friends visited by
+    // that side already, so a meeting through it would have been seen earlier
+    private static int[] join(Side forward, Side backward, int meeting, int hops) {
+        int[] path = new int[hops + 1];
+        int index = 0;
+        int[] toMeeting = forward.pathFromRoot(meeting);
+        for (int id : toMeeting) {
+            path[index++] = id;
+        }
+        for (int id = backward.parents.get(meeting); id != Side.ROOT; id = backward.parents.get(id)) {
+            path[index++] = id;
+        }
+        return path;
+    }
+
+    private static final class Side {
+        static final int ROOT = -2;
+
+        final IntIntMap parents = new IntIntMap(64);
+        int[] frontier = new int[16];
+        int size;
+        // Friend ids read so far
+        long scanned;
+        private int[] next = new int[16];
+
+        Side(int root) {
+            parents.putIfAbsent(root, ROOT);
+            frontier[size++] = root;
+        }
+
+        // Visits the next level; returns an id also reached by other, if any,
+        // or GAVE_UP before the two sides read more than maxScanned ids
+        int expand(FriendGraph graph, Side other, long maxScanned) {
+            int nextSize = 0;
+            for (int i = 0; i < size; i++) {
+                int current = frontier[i];
+                // Checked with the degree first, so a hub's friends are not even listed
+                int degree = graph.degree(current);
+                if (scanned + other.scanned + degree > maxScanned) {
+                    return GAVE_UP;
+                }
+                scanned += degree;
+                for (int friend : graph.neighbors(current)) {
+                    if (!parents.putIfAbsent(friend, current)) {
+                        continue;
+                    }
+                    if (other.parents.get(friend) != IntIntMap.MISSING) {
+                        return friend;
+                    }
+                    if (nextSize == next.length) {
+                        next = Arrays.copyOf(next, nextSize * 2);
+                    }
+                    next[nextSize++] = friend;
+                }
+            }
+            int[] swap = frontier;
+            frontier = next;
+            next = swap;
+            size = nextSize;
+            return IntIntMap.MISSING;
+        }
+
+        int[] pathFromRoot(int id) {
+            int length = 0;
+            for (int at = id; at != ROOT; at = parents.get(at)) {
+                length++;
+            }
+            int[] path = new int[length];
+            for (int at = id; at != ROOT; at = parents.get(at)) {
+                path[--length] = at;
+            }
+            return path;
+        }
+    }
+}
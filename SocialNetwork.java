@@ -1,201 +1,1038 @@
 package socialMediaPlatform;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
-class SocialNetwork {
-    private static final String DATA_FILE = "data/Data_Network.ser";
-    private Map<String, UserDirectory> users;
+class SocialNetwork implements Closeable {
+    private static final String DATA_DIRECTORY = "data";
+    static final String DATA_FILE = "Data_Network.snap";
+    // Snapshot format used before NetworkSnapshot; converted on first start
+    private static final String LEGACY_DATA_FILE = "Data_Network.ser";
+    private static final String LOG_FILE = "Data_Network.log";
+    // Fold the mutation log into a fresh snapshot once it holds this many records
+    private static final int COMPACTION_THRESHOLD = 1000;
+    private static final long GROUP_COMMIT_MILLIS = 10;
+    private static final int LOCK_STRIPES = 256;
+    private static final int RECOMMENDATION_CACHE_USERS = 10_000;
+    // Whole-network traversals go parallel from this many users on
+    private static final int PARALLEL_BFS_USERS = 100_000;
+    // Seconds between metric dumps to the log; 0 turns the dump off
+    private static final long METRICS_DUMP_SECONDS = Long.getLong("pathfinders.metrics.dumpSeconds", 0);
 
+    // How the snapshot is brought into memory on startup
+    enum StorageMode {
+        HEAP,   // read the whole snapshot into objects up front
+        MAPPED  // memory-map the snapshot and materialize users on first access
+    }
+
+    // Replaced wholesale when a compaction re-maps the snapshot
+    private volatile Map<String, UserDirectory> users;
+    private volatile FriendGraph graph;
+    // Username order for paging; rebuilt whenever the graph is replaced
+    private volatile UsernameOrder userOrder;
+    private long snapshotSequence;
+    private final StorageMode storageMode;
+    private final Path dataFile;
+    private final Path legacyFile;
+    private final MutationLog mutationLog;
+    // Most recent posts kept per user
+    private final int postCapacity;
+
+    // Mutations share the read side and take stripes for the users involved;
+    // compaction takes the write side so it sees a quiet network
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final StripedLocks userLocks = new StripedLocks(LOCK_STRIPES);
+    private final StripedLocks usernameLocks = new StripedLocks(LOCK_STRIPES);
+    private final RecommendationCache recommendationCache =
+            new RecommendationCache(RECOMMENDATION_CACHE_USERS, FriendRecommender.DEFAULT_LIMIT);
+    private final ConnectivityIndex connectivity = new ConnectivityIndex(ForkJoinPool.commonPool());
+    private final FeedService feeds =
+            new FeedService(FeedService.DEFAULT_FAN_OUT_LIMIT, FeedService.DEFAULT_INBOX_CAPACITY, FeedService.DEFAULT_MAX_INBOXES);
+    private final PostSearchIndex postIndex = new PostSearchIndex();
+    private final TypeaheadIndex typeahead = new TypeaheadIndex();
+    private final NetworkMetrics metrics = new NetworkMetrics(() -> graph);
+
+    private final Map<String, UserDirectory> currentUsers = new CurrentUsers();
+
+    // Read-only, and valid across compactions: see CurrentUsers
     public Map<String, UserDirectory> getUsers() {
-        return users;
+        return currentUsers;
+    }
+
+    // Looks users up in whichever map is current at each call, so callers can
+    // keep it while compactions replace the mapped store. The new map is
+    // published before the old store is closed, so a lookup that reached the
+    // closed store is retried against its replacement. An iteration walks the
+    // map that was current when it began.
+    private final class CurrentUsers extends AbstractMap<String, UserDirectory> {
+        @Override
+        public UserDirectory get(Object username) {
+            return resolve(map -> map.get(username));
+        }
+
+        @Override
+        public boolean containsKey(Object username) {
+            return resolve(map -> map.containsKey(username));
+        }
+
+        @Override
+        public int size() {
+            return resolve(Map::size);
+        }
+
+        @Override
+        public Set<Entry<String, UserDirectory>> entrySet() {
+            return Collections.unmodifiableMap(users).entrySet();
+        }
+
+        private <T> T resolve(Function<Map<String, UserDirectory>, T> lookup) {
+            while (true) {
+                Map<String, UserDirectory> current = users;
+                try {
+                    return lookup.apply(current);
+                } catch (IllegalStateException e) {
+                    if (current == users) {
+                        throw e;
+                    }
+                }
+            }
+        }
     }
 
     public SocialNetwork() {
+        this(StorageMode.MAPPED, MutationLog.SyncMode.GROUP_COMMIT);
+    }
+
+    public SocialNetwork(StorageMode storageMode, MutationLog.SyncMode syncMode) {
+        this(storageMode, syncMode, PostTimeline.DEFAULT_CAPACITY);
+    }
+
+    public SocialNetwork(StorageMode storageMode, MutationLog.SyncMode syncMode, int postCapacity) {
+        this(Paths.get(DATA_DIRECTORY), storageMode, syncMode, postCapacity);
+    }
 
-        File file = new File(DATA_FILE).getParentFile();
-        if (file!=null && !file.exists()) {
+    // Keeps the snapshot and log in the given directory instead of ./data,
+    // e.g. for benchmarks that must not touch the real network
+    SocialNetwork(Path dataDirectory, StorageMode storageMode, MutationLog.SyncMode syncMode, int postCapacity) {
+        if (postCapacity < 1) {
+            throw new IllegalArgumentException("Users must be able to keep at least one post.");
+        }
+        this.storageMode = storageMode;
+        this.postCapacity = postCapacity;
+        this.dataFile = dataDirectory.resolve(DATA_FILE);
+        this.legacyFile = dataDirectory.resolve(LEGACY_DATA_FILE);
+
+        File file = dataDirectory.toFile();
+        if (!file.exists()) {
             file.mkdirs();
         }
 
         if (!loadData()) {
-            this.users = new HashMap<>();
+            this.users = new ConcurrentHashMap<>();
+            this.graph = new FriendGraph();
+        }
+        userOrder = new UsernameOrder(graph.size());
+
+        mutationLog = new MutationLog(dataDirectory.resolve(LOG_FILE), syncMode, GROUP_COMMIT_MILLIS);
+        try {
+            int replayed = mutationLog.open(snapshotSequence, this::replay);
+            if (replayed > 0) {
+                NetworkLog.info("Replayed " + replayed + " logged changes.");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error opening mutation log: " + e.getMessage(), e);
+        }
+
+        metrics.register();
+        if (METRICS_DUMP_SECONDS > 0) {
+            metrics.startDump(METRICS_DUMP_SECONDS, TimeUnit.SECONDS);
         }
     }
 
 
 
+    // Writes the full network to a new snapshot file and swaps it in atomically.
+    // Only compaction calls this; individual mutations go to the log.
     private void saveData() {
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) {
-            out.writeObject(users);
-            System.out.println("Data saved successfully.");
+        long start = System.nanoTime();
+        long sequence = mutationLog.lastSequence();
+        try {
+            int[] snapshotIds = NetworkSnapshot.write(dataFile, graph, sequence);
+            snapshotSequence = sequence;
+            if (storageMode == StorageMode.MAPPED) {
+                // Page from the new file. Users already in memory move to their
+                // new ids with their posts instead of being loaded again.
+                MappedNetworkStore store = MappedNetworkStore.open(dataFile);
+                Map<String, UserDirectory> oldUsers = users;
+                FriendGraph oldGraph = graph;
+                for (int id = 0; id < snapshotIds.length; id++) {
+                    UserDirectory user = oldGraph.loadedUser(id);
+                    if (user != null) {
+                        store.graph().adopt(snapshotIds[id], user);
+                    }
+                }
+                users = store;
+                graph = store.graph();
+                retire(oldUsers, oldGraph);
+                graphReplaced(snapshotIds);
+            }
+            NetworkLog.info("Data saved successfully.");
         } catch (IOException e) {
-            System.err.println("Error saving data: " + e.getMessage());
-
+            NetworkLog.error("Error saving data: " + e.getMessage());
+        } finally {
+            metrics.record(NetworkMetrics.Operation.SAVE_DATA, start);
         }
     }
 
 
 
     private boolean loadData() {
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(DATA_FILE))) {
-            users = (Map<String, UserDirectory>) in.readObject();
-            System.out.println("Data loaded successfully.");
+        long start = System.nanoTime();
+        try {
+            if (!Files.exists(dataFile) && Files.exists(legacyFile)) {
+                NetworkLog.info("Converting " + legacyFile + " to the binary snapshot format.");
+                NetworkSnapshot.convertLegacy(legacyFile, dataFile);
+            }
+            openSnapshot();
+            NetworkLog.info("Data loaded successfully.");
             return true;
-        } catch (FileNotFoundException e ) {
-            System.out.println("No data file found. Starting with an empty network.");
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading data: " + e.getMessage());
+        } catch (NoSuchFileException e) {
+            NetworkLog.info("No data file found. Starting with an empty network.");
+        } catch (IOException e) {
+            NetworkLog.error("Error loading data: " + e.getMessage());
+        } finally {
+            metrics.record(NetworkMetrics.Operation.LOAD_DATA, start);
         }
         return false;
     }
 
+    private void openSnapshot() throws IOException {
+        if (storageMode == StorageMode.MAPPED) {
+            MappedNetworkStore store = MappedNetworkStore.open(dataFile);
+            users = store;
+            graph = store.graph();
+            snapshotSequence = store.sequence();
+        } else {
+            NetworkSnapshot.Contents contents = NetworkSnapshot.read(dataFile);
+            users = contents.users;
+            graph = contents.graph;
+            snapshotSequence = contents.sequence;
+        }
+    }
+
+    // Once no pinned version reads the replaced graph any more, frees the
+    // posts of users still attached to it, which would otherwise hold their
+    // texts in the PostArena, and closes its mapped store
+    private static void retire(Map<String, UserDirectory> oldUsers, FriendGraph oldGraph) {
+        oldGraph.whenUnpinned(() -> {
+            oldGraph.discardPosts();
+            if (oldUsers instanceof MappedNetworkStore) {
+                ((MappedNetworkStore) oldUsers).close();
+            }
+        });
+    }
+
+    // Cached suggestions, components and feeds are keyed by the old graph's
+    // ids. snapshotIds maps old ids to new ones when the users carried over,
+    // as in a compaction, and is null when they were read back.
+    private void graphReplaced(int[] snapshotIds) {
+        userOrder = new UsernameOrder(graph.size());
+        recommendationCache.clear();
+        connectivity.invalidate();
+        feeds.clear();
+        // The search index holds posts and the typeahead keeps its keys, so
+        // both survive a renumbering and only go with the users themselves
+        if (snapshotIds == null) {
+            postIndex.clear();
+            typeahead.clear();
+        } else {
+            typeahead.remap(snapshotIds);
+        }
+    }
+
+    // Appends a successful mutation to the log and returns its sequence
+    // number, or -1 if it could not be logged. Called while holding the locks
+    // of the users involved, so log order matches the order changes were applied.
+    private long logMutation(MutationLog.Type type, String first, String second) {
+        return logTimedMutation(type, first, second, 0);
+    }
+
+    private long logTimedMutation(MutationLog.Type type, String first, String second, long timestamp) {
+        try {
+            return mutationLog.append(type, first, second, timestamp);
+        } catch (IOException e) {
+            NetworkLog.error("Error logging change: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    // Rejects a change before it is applied if its log record would be too
+    // long for replay, which would drop it and every record after it
+    private static void checkLoggable(MutationLog.Type type, String first, String second) {
+        if (MutationLog.recordBytes(type, first, second) > MutationLog.MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Change is too large to log as one record.");
+        }
+    }
+
+    // Waits for a logged mutation to become durable. Called after the
+    // mutation's locks are released, so a group commit does not hold up
+    // other writers or a compaction.
+    private void awaitLogged(long sequence) {
+        if (sequence < 0) {
+            return;
+        }
+        try {
+            mutationLog.awaitDurable(sequence);
+        } catch (IOException e) {
+            NetworkLog.error("Error logging change: " + e.getMessage());
+        }
+    }
+
+    // Called after the mutation's locks are released
+    private void compactIfNeeded() {
+        if (mutationLog.recordCount() >= COMPACTION_THRESHOLD) {
+            compact(false);
+        }
+    }
+
+    // Folds the mutation log into a snapshot and empties it
+    public void compact() {
+        compact(true);
+    }
+
+    // Unless forced, checks the threshold again under the write lock, so
+    // writers that cross it together write one snapshot rather than one each
+    private void compact(boolean force) {
+        snapshotLock.writeLock().lock();
+        try {
+            if (!force && mutationLog.recordCount() < COMPACTION_THRESHOLD) {
+                return;
+            }
+            saveData();
+            if (snapshotSequence != mutationLog.lastSequence()) {
+                return;
+            }
+            mutationLog.reset();
+        } catch (IOException e) {
+            NetworkLog.error("Error truncating mutation log: " + e.getMessage());
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    // Re-applies a logged mutation on startup; only successful mutations are
+    // logged, so the checks here are just a guard against a damaged snapshot
+    private void replay(MutationLog.Entry entry) {
+        switch (entry.type) {
+            case ADD_USER -> {
+                if (!users.containsKey(entry.first)) {
+                    createUser(entry.first, entry.second);
+                }
+            }
+            case ADD_FRIEND -> {
+                UserDirectory userId1 = users.get(entry.first);
+                UserDirectory userId2 = users.get(entry.second);
+                if (userId1 != null && userId2 != null) {
+                    linkFriends(userId1, userId2);
+                }
+            }
+            case REMOVE_FRIEND -> {
+                UserDirectory userId1 = users.get(entry.first);
+                UserDirectory userId2 = users.get(entry.second);
+                if (userId1 != null && userId2 != null) {
+                    unlinkFriends(userId1, userId2);
+                }
+            }
+            case ADD_POST, ADD_TIMED_POST -> {
+                UserDirectory user = users.get(entry.first);
+                if (user != null) {
+                    user.addPost(entry.second, entry.timestamp, postCapacity);
+                }
+            }
+        }
+    }
+
+    // Flushes pending log records and releases the log file
+    @Override
+    public void close() {
+        metrics.close();
+        try {
+            mutationLog.close();
+        } catch (IOException e) {
+            NetworkLog.error("Error closing mutation log: " + e.getMessage());
+        }
+        NetworkLog.flush();
+    }
+
+    // Adds the users and friendships in the given files (either may be null;
+    // see BulkImporter for the format) and writes one snapshot at the end.
+    // Users that already exist and repeated friendships are skipped, and rows
+    // that cannot be used are counted in the report rather than failing the
+    // import. Other operations wait until the import is done.
+    public BulkImporter.Report importNetwork(Path usersFile, Path edgesFile) throws IOException {
+        snapshotLock.writeLock().lock();
+        try {
+            BulkImporter.Result result = BulkImporter.run(graph, usersFile, edgesFile, ForkJoinPool.commonPool());
+            long sequence = mutationLog.lastSequence();
+            result.applyFollowCounts();
+            try {
+                NetworkSnapshot.write(dataFile, result.graph, sequence);
+            } catch (IOException e) {
+                result.undoFollowCounts();
+                throw e;
+            }
+            mutationLog.reset();
+            // Snapshot ids are username ranks, so read the network back rather than keep the staged ids
+            Map<String, UserDirectory> oldUsers = users;
+            FriendGraph oldGraph = graph;
+            openSnapshot();
+            retire(oldUsers, oldGraph);
+            graphReplaced(null);
+            NetworkLog.info("Imported " + result.report.usersAdded + " users and "
+                    + result.report.friendshipsAdded + " friendships.");
+            return result.report;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    // Call counts, latency percentiles and graph size, as a text table
+    public String getMetricsReport() {
+        return metrics.report();
+    }
+
 
 
     // Add a user to the network
     public void addUser(String username, String name) {
-        if (users.containsKey(username)) {
-            System.out.println("Username already exists.");
-            return;
+        long start = System.nanoTime();
+        try {
+            // Same checks as UserDirectory, made before the username picks a stripe
+            if (username == null || username.isBlank()) {
+                throw new IllegalArgumentException("Username cannot be null or blank.");
+            }
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("Full name cannot be null or blank.");
+            }
+            checkLoggable(MutationLog.Type.ADD_USER, username, name);
+            long logged;
+            snapshotLock.readLock().lock();
+            usernameLocks.lock(username.hashCode());
+            try {
+                if (users.containsKey(username)) {
+                    NetworkLog.warn("Username already exists.");
+                    return;
+                }
+                createUser(username, name);
+                logged = logMutation(MutationLog.Type.ADD_USER, username, name);
+            } finally {
+                usernameLocks.unlock(username.hashCode());
+                snapshotLock.readLock().unlock();
+            }
+            awaitLogged(logged);
+            compactIfNeeded();
+        } finally {
+            metrics.record(NetworkMetrics.Operation.ADD_USER, start);
         }
-        users.put(username, new UserDirectory(username, name));
-        saveData();
+    }
+
+    private UserDirectory createUser(String username, String name) {
+        UserDirectory user = new UserDirectory(username, name);
+        graph.register(user);
+        users.put(username, user);
+        typeahead.userAdded(user);
+        return user;
     }
 
     // Add a friend relationship
     public void addFriend(String username1, String username2) {
-        if (username1.equals(username2)) {
-            System.out.println("A user cannot be friends with themselves.");
-            return;
-        }
+        long start = System.nanoTime();
+        try {
+            if (username1.equals(username2)) {
+                NetworkLog.warn("A user cannot be friends with themselves.");
+                return;
+            }
 
-        UserDirectory userId1 = users.get(username1);
-        UserDirectory userId2 = users.get(username2);
+            long logged;
+            snapshotLock.readLock().lock();
+            try {
+                // Looked up under the lock so a concurrent compaction cannot swap the graph underneath
+                UserDirectory userId1 = users.get(username1);
+                UserDirectory userId2 = users.get(username2);
 
-        if (userId1 == null || userId2 == null) {
-            System.out.println("One or both users not found.");
-            return;
-        }
+                if (userId1 == null || userId2 == null) {
+                    NetworkLog.warn("One or both users not found.");
+                    return;
+                }
 
-        if (userId1.getFriends().contains(userId2)) {
-            System.out.println("Friendship already exists between " + userId1.getName() + " and " + userId2.getName());
-            return;
+                // Only the change and its log record need the stripes
+                userLocks.lock(userId1.id(), userId2.id());
+                try {
+                    if (!linkFriends(userId1, userId2)) {
+                        NetworkLog.warn("Friendship already exists between " + userId1.getName() + " and " + userId2.getName());
+                        return;
+                    }
+                    logged = logMutation(MutationLog.Type.ADD_FRIEND, username1, username2);
+                } finally {
+                    userLocks.unlock(userId1.id(), userId2.id());
+                }
+                friendshipIndexed(userId1.id(), userId2.id(), true);
+                NetworkLog.info("Friendship created between " + userId1.getName() + " and " + userId2.getName());
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            awaitLogged(logged);
+            compactIfNeeded();
+        } finally {
+            metrics.record(NetworkMetrics.Operation.ADD_FRIEND, start);
         }
+    }
 
-        userId1.addFriend(userId2);
+    // Caller holds both users' stripes; returns false if they were already friends
+    private boolean linkFriends(UserDirectory userId1, UserDirectory userId2) {
+        if (!graph.link(userId1.id(), userId2.id())) {
+            return false;
+        }
         userId1.incrementFollowerCount();
         userId2.incrementFollowingCount();
-        System.out.println("Friendship created between " + userId1.getName() + " and " + userId2.getName());
-        saveData();
+        return true;
     }
 
     // Remove a friend relationship
     public void removeFriend(String username1, String username2) {
-        UserDirectory userId1 = users.get(username1);
-        UserDirectory userId2 = users.get(username2);
+        long start = System.nanoTime();
+        try {
+            long logged;
+            snapshotLock.readLock().lock();
+            try {
+                UserDirectory userId1 = users.get(username1);
+                UserDirectory userId2 = users.get(username2);
 
-        if (userId1 == null || userId2 == null) {
-            System.out.println("One or both users not found.");
-            return;
-        }
+                if (userId1 == null || userId2 == null) {
+                    NetworkLog.warn("One or both users not found.");
+                    return;
+                }
 
-        if (!userId1.getFriends().contains(userId2)) {
-            System.out.println(userId1.getName() + " and " + userId2.getName() + " are not friends.");
-            return;
+                userLocks.lock(userId1.id(), userId2.id());
+                try {
+                    if (!unlinkFriends(userId1, userId2)) {
+                        NetworkLog.warn(userId1.getName() + " and " + userId2.getName() + " are not friends.");
+                        return;
+                    }
+                    logged = logMutation(MutationLog.Type.REMOVE_FRIEND, username1, username2);
+                } finally {
+                    userLocks.unlock(userId1.id(), userId2.id());
+                }
+                friendshipIndexed(userId1.id(), userId2.id(), false);
+                NetworkLog.info("Friendship removed between " + userId1.getName() + " and " + userId2.getName());
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            awaitLogged(logged);
+            compactIfNeeded();
+        } finally {
+            metrics.record(NetworkMetrics.Operation.REMOVE_FRIEND, start);
         }
+    }
 
-        userId1.removeFriend(userId2);
+    // Caller holds both users' stripes; returns false if they were not friends
+    private boolean unlinkFriends(UserDirectory userId1, UserDirectory userId2) {
+        if (!graph.unlink(userId1.id(), userId2.id())) {
+            return false;
+        }
         userId1.decrementFollowerCount();
         userId2.decrementFollowingCount();
-        System.out.println("Friendship removed between " + userId1.getName() + " and " + userId2.getName());
-        saveData();
+        return true;
+    }
+
+    // Brings the caches and indexes up to date with a linked or unlinked pair.
+    // Runs after the stripes are released, so another change to the same pair
+    // may already be in the graph; each update checks the graph as it is now
+    // rather than assuming the change it was called for. Caller holds the
+    // snapshot read or write lock, so the ids still belong to this graph.
+    private void friendshipIndexed(int id1, int id2, boolean added) {
+        recommendationCache.friendshipChanged(graph, id1, id2);
+        if (added) {
+            connectivity.friendshipAdded(graph, id1, id2);
+        } else {
+            connectivity.friendshipRemoved(graph, id1, id2);
+        }
+        feeds.friendshipChanged(graph, id1, id2);
     }
 
     // Get mutual friends between two users
     public Set<UserDirectory> getMutualFriends(String username1, String username2) {
-        UserDirectory userId1 = users.get(username1);
-        UserDirectory userId2 = users.get(username2);
+        long start = System.nanoTime();
+        // Both users are resolved against the same graph; a compaction cannot swap it in between
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory userId1 = users.get(username1);
+            UserDirectory userId2 = users.get(username2);
 
-        if (userId1 == null || userId2 == null) {
-            System.out.println("One or both users not found.");
-            return Set.of();
+            if (userId1 == null || userId2 == null) {
+                NetworkLog.warn("One or both users not found.");
+                return Set.of();
+            }
+
+            FriendGraph current = graph;
+            int[] common = NeighborIntersection.intersect(current.neighbors(userId1.id()), current.neighbors(userId2.id()));
+            Set<UserDirectory> mutualFriends = new LinkedHashSet<>(Math.max(16, (int) (common.length / 0.75f) + 1));
+            for (int id : common) {
+                mutualFriends.add(current.user(id));
+            }
+
+            if (mutualFriends.isEmpty()) {
+                NetworkLog.info("No mutual friends found.");
+            }
+            return mutualFriends;
+        } finally {
+            snapshotLock.readLock().unlock();
+            metrics.record(NetworkMetrics.Operation.GET_MUTUAL_FRIENDS, start);
         }
+    }
+
+    // Number of mutual friends, e.g. for a "12 shared connections" badge; allocates nothing
+    public int countMutualFriends(String username1, String username2) {
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory userId1 = users.get(username1);
+            UserDirectory userId2 = users.get(username2);
 
-        Set<UserDirectory> mutualFriends = new HashSet<>(userId1.getFriends());
-        mutualFriends.retainAll(userId2.getFriends());
+            if (userId1 == null || userId2 == null) {
+                return 0;
+            }
 
-        if (mutualFriends.isEmpty()) {
-            System.out.println("No mutual friends found.");
+            FriendGraph current = graph;
+            return NeighborIntersection.count(current.neighbors(userId1.id()), current.neighbors(userId2.id()));
+        } finally {
+            snapshotLock.readLock().unlock();
         }
-        return mutualFriends;
     }
 
-    // Suggest friends based on mutual connections
-    public Set<UserDirectory> suggestFriends(String username) {
-        UserDirectory user = users.get(username);
+    // Suggest friends based on mutual connections, best first
+    public List<FriendSuggestion> suggestFriends(String username) {
+        return suggestFriends(username, FriendRecommender.DEFAULT_LIMIT);
+    }
 
-        if (user == null) {
-            System.out.println("User not found.");
-            return Set.of();
+    public List<FriendSuggestion> suggestFriends(String username, int limit) {
+        long start = System.nanoTime();
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory user = users.get(username);
+
+            if (user == null) {
+                NetworkLog.warn("User not found.");
+                return List.of();
+            }
+
+            return recommendationCache.get(graph, user.id(), limit);
+        } finally {
+            snapshotLock.readLock().unlock();
+            metrics.record(NetworkMetrics.Operation.SUGGEST_FRIENDS, start);
         }
+    }
 
-        Map<UserDirectory, Integer> recommendationScores = new HashMap<>();
+    public RecommendationCache.Stats getRecommendationCacheStats() {
+        return recommendationCache.stats();
+    }
 
-        for (UserDirectory friend : user.getFriends()) {
-            for (UserDirectory potentialFriend : friend.getFriends()) {
-                if (!potentialFriend.equals(user) && !user.getFriends().contains(potentialFriend)) {
-                    recommendationScores.put(
-                            potentialFriend,
-                            recommendationScores.getOrDefault(potentialFriend, 0) + 1
-                    );
+    public PostArena.Stats getPostStorageStats() {
+        return PostArena.shared().stats();
+    }
+
+    // Suggestions for every user, computed in parallel on a pinned version of
+    // the graph. The sink is called from several threads as each user finishes.
+    // Returns how many users were processed.
+    public long suggestFriendsForAll(int limit, BatchRecommender.Sink sink) {
+        try (FriendGraph.Version version = pinGraph()) {
+            return BatchRecommender.suggestAll(version.graph(), limit, sink, ForkJoinPool.commonPool());
+        }
+    }
+
+    // Pins the current graph under the read lock, so a compaction cannot
+    // retire it and close its store first; the caller reads the version
+    // after the lock is released
+    private FriendGraph.Version pinGraph() {
+        snapshotLock.readLock().lock();
+        try {
+            return graph.pin();
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Same, for the given users only; unknown usernames are skipped
+    public long suggestFriendsFor(Collection<String> usernames, int limit, BatchRecommender.Sink sink) {
+        FriendGraph.Version version;
+        int[] ids = new int[usernames.size()];
+        int count = 0;
+        // Resolve ids against the same graph that is pinned; a compaction could replace it
+        snapshotLock.readLock().lock();
+        try {
+            version = graph.pin();
+            for (String username : usernames) {
+                UserDirectory user = users.get(username);
+                if (user != null) {
+                    ids[count++] = user.id();
+                }
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        try (version) {
+            return BatchRecommender.suggest(version.graph(), Arrays.copyOf(ids, count), limit, sink, ForkJoinPool.commonPool());
+        }
+    }
+
+    // Writes every user's suggestions to a tab-separated file
+    public long writeFriendSuggestions(Path file, int limit) throws IOException {
+        try (BatchRecommender.FileSink sink = new BatchRecommender.FileSink(file)) {
+            return suggestFriendsForAll(limit, sink);
+        }
+    }
+
+
+
+
+
+    // Add a post to a user's profile
+    public void addUserPost(String username, String post) {
+        long start = System.nanoTime();
+        try {
+            long logged;
+            snapshotLock.readLock().lock();
+            try {
+                UserDirectory user = users.get(username);
+
+                if (user == null) {
+                    NetworkLog.warn("User not found.");
+                    return;
+                }
+
+                if (post == null || post.trim().isEmpty()) {
+                    NetworkLog.warn("Post content cannot be empty.");
+                    return;
                 }
+                checkLoggable(MutationLog.Type.ADD_TIMED_POST, username, post);
+
+                userLocks.lock(user.id());
+                try {
+                    long timestamp = System.currentTimeMillis();
+                    storePost(user, post, timestamp);
+                    logged = logTimedMutation(MutationLog.Type.ADD_TIMED_POST, username, post, timestamp);
+                } finally {
+                    userLocks.unlock(user.id());
+                }
+                NetworkLog.info("Post added for " + user.getName());
+            } finally {
+                snapshotLock.readLock().unlock();
+            }
+            awaitLogged(logged);
+            compactIfNeeded();
+        } finally {
+            metrics.record(NetworkMetrics.Operation.ADD_POST, start);
+        }
+    }
+
+    // Caller holds the user's stripe or the write lock
+    private void storePost(UserDirectory user, String post, long timestamp) {
+        Post[] before = user.timeline();
+        Post added = user.addPost(post, timestamp, postCapacity);
+        feeds.postAdded(graph, user.id(), added);
+        postIndex.postAdded(added);
+        for (Post old : before) {
+            if (old.isEvicted()) {
+                postIndex.postRemoved(old);
             }
         }
+    }
 
-        return recommendationScores.entrySet().stream()
-                .sorted((entry1, entry2) -> {
-                    int mutualComparison = entry2.getValue().compareTo(entry1.getValue());
-                    if (mutualComparison != 0) {
-                        return mutualComparison;
+    // Starts a group of changes that are checked together, applied under one
+    // lock and logged as one record; see MutationBatch
+    public MutationBatch batch() {
+        return new MutationBatch(this);
+    }
+
+    MutationBatch.Result applyBatch(MutationBatch batch) {
+        long start = System.nanoTime();
+        try {
+            List<MutationBatch.Operation> operations = List.copyOf(batch.operations());
+            if (batch.logBytes() > MutationLog.MAX_RECORD_BYTES) {
+                throw new IllegalArgumentException("Batch is too large to log as one record; split it into smaller batches.");
+            }
+            MutationBatch.Result result;
+            long logged = -1;
+            // The write lock keeps the checked state unchanged until the batch is applied
+            snapshotLock.writeLock().lock();
+            try {
+                List<MutationBatch.Status> statuses = checkBatch(operations);
+                if (operations.isEmpty() || Collections.frequency(statuses, MutationBatch.Status.APPLIED) < operations.size()) {
+                    return new MutationBatch.Result(operations, statuses, false);
+                }
+                List<MutationLog.Entry> entries = new ArrayList<>(operations.size());
+                // Friendship changes are collected and applied to the graph
+                // together, so a hub's row is copied once per batch rather
+                // than once per friend added or removed
+                Map<Long, Boolean> friendships = new LinkedHashMap<>();
+                // A pinned version sees all of the batch or none of it
+                graph.beginChanges();
+                try {
+                    for (MutationBatch.Operation operation : operations) {
+                        entries.add(applyChecked(operation, friendships));
                     }
+                    applyFriendships(friendships);
+                } finally {
+                    graph.endChanges();
+                }
+                try {
+                    logged = mutationLog.appendBatch(entries);
+                } catch (IOException e) {
+                    NetworkLog.error("Error logging change: " + e.getMessage());
+                }
+                result = new MutationBatch.Result(operations, statuses, true);
+            } finally {
+                snapshotLock.writeLock().unlock();
+            }
+            awaitLogged(logged);
+            NetworkLog.debug(result.toString());
+            compactIfNeeded();
+            return result;
+        } finally {
+            metrics.record(NetworkMetrics.Operation.BATCH, start);
+        }
+    }
+
+    // Checks each operation against the network as the operations before it
+    // would leave it. If any fails, the valid ones are marked NOT_APPLIED.
+    // Caller holds the write lock.
+    private List<MutationBatch.Status> checkBatch(List<MutationBatch.Operation> operations) {
+        // Users added by the batch get the ids they will be registered with
+        Map<String, Integer> addedUsers = new HashMap<>();
+        // Friendships the batch changes, keyed by id pair, and whether they exist afterwards
+        Map<Long, Boolean> changedFriendships = new HashMap<>();
+        List<MutationBatch.Status> statuses = new ArrayList<>(operations.size());
+        boolean failed = false;
 
-                    int degree1 = entry1.getKey().getFriends().size();
-                    int degree2 = entry2.getKey().getFriends().size();
-                    if (degree1 != degree2) {
-                        return Integer.compare(degree2, degree1);
+        for (MutationBatch.Operation operation : operations) {
+            MutationBatch.Status status = switch (operation.type) {
+                case ADD_USER -> {
+                    if (users.containsKey(operation.first) || addedUsers.containsKey(operation.first)) {
+                        yield MutationBatch.Status.USER_EXISTS;
+                    }
+                    addedUsers.put(operation.first, graph.size() + addedUsers.size());
+                    yield MutationBatch.Status.APPLIED;
+                }
+                case ADD_FRIEND, REMOVE_FRIEND -> {
+                    int id1 = batchUserId(operation.first, addedUsers);
+                    int id2 = batchUserId(operation.second, addedUsers);
+                    if (id1 < 0 || id2 < 0) {
+                        yield MutationBatch.Status.USER_NOT_FOUND;
                     }
+                    boolean adding = operation.type == MutationLog.Type.ADD_FRIEND;
+                    if (id1 == id2) {
+                        yield adding ? MutationBatch.Status.SELF_FRIENDSHIP : MutationBatch.Status.NOT_FRIENDS;
+                    }
+                    long pair = friendshipPair(id1, id2);
+                    Boolean changed = changedFriendships.get(pair);
+                    boolean friends = changed != null ? changed
+                            : id1 < graph.size() && id2 < graph.size() && graph.connected(id1, id2);
+                    if (friends == adding) {
+                        yield adding ? MutationBatch.Status.ALREADY_FRIENDS : MutationBatch.Status.NOT_FRIENDS;
+                    }
+                    changedFriendships.put(pair, adding);
+                    yield MutationBatch.Status.APPLIED;
+                }
+                case ADD_TIMED_POST -> {
+                    if (batchUserId(operation.first, addedUsers) < 0) {
+                        yield MutationBatch.Status.USER_NOT_FOUND;
+                    }
+                    yield operation.second.trim().isEmpty() ? MutationBatch.Status.EMPTY_POST : MutationBatch.Status.APPLIED;
+                }
+                default -> throw new IllegalArgumentException("Not a batch operation: " + operation.type);
+            };
+            failed |= status != MutationBatch.Status.APPLIED;
+            statuses.add(status);
+        }
 
-                    return entry1.getKey().getUsername().compareTo(entry2.getKey().getUsername());
-                })
-                .map(Map.Entry::getKey)
-                .limit(10)
-                .collect(Collectors.toSet());
+        if (failed) {
+            statuses.replaceAll(status -> status == MutationBatch.Status.APPLIED ? MutationBatch.Status.NOT_APPLIED : status);
+        }
+        return statuses;
     }
 
+    private int batchUserId(String username, Map<String, Integer> addedUsers) {
+        UserDirectory user = users.get(username);
+        if (user != null) {
+            return user.id();
+        }
+        Integer id = addedUsers.get(username);
+        return id != null ? id : -1;
+    }
 
+    // Applies an operation that checkBatch passed and returns its log entry.
+    // Friendships only update the counts and are recorded in friendships, by
+    // id pair with whether they exist afterwards, for applyFriendships.
+    // Caller holds the write lock.
+    private MutationLog.Entry applyChecked(MutationBatch.Operation operation, Map<Long, Boolean> friendships) {
+        long timestamp = 0;
+        switch (operation.type) {
+            case ADD_USER -> createUser(operation.first, operation.second);
+            case ADD_FRIEND -> {
+                UserDirectory userId1 = users.get(operation.first);
+                UserDirectory userId2 = users.get(operation.second);
+                userId1.incrementFollowerCount();
+                userId2.incrementFollowingCount();
+                friendships.put(friendshipPair(userId1.id(), userId2.id()), true);
+            }
+            case REMOVE_FRIEND -> {
+                UserDirectory userId1 = users.get(operation.first);
+                UserDirectory userId2 = users.get(operation.second);
+                userId1.decrementFollowerCount();
+                userId2.decrementFollowingCount();
+                friendships.put(friendshipPair(userId1.id(), userId2.id()), false);
+            }
+            case ADD_TIMED_POST -> {
+                timestamp = System.currentTimeMillis();
+                storePost(users.get(operation.first), operation.second, timestamp);
+            }
+            default -> throw new IllegalArgumentException("Not a batch operation: " + operation.type);
+        }
+        return new MutationLog.Entry(operation.type, 0, operation.first, operation.second, timestamp);
+    }
 
+    // Puts a batch's friendships into the graph, copying each touched row
+    // once, then brings the indexes up to date. A pair added and removed
+    // again within the batch leaves the graph as it was. Caller holds the
+    // write lock and the graph's changes.
+    private void applyFriendships(Map<Long, Boolean> friendships) {
+        List<Map.Entry<Long, Boolean>> changed = new ArrayList<>(friendships.size());
+        long[] links = new long[friendships.size()];
+        long[] unlinks = new long[friendships.size()];
+        int linkCount = 0;
+        int unlinkCount = 0;
+        for (Map.Entry<Long, Boolean> friendship : friendships.entrySet()) {
+            long pair = friendship.getKey();
+            if (graph.connected((int) (pair >>> 32), (int) pair) == friendship.getValue()) {
+                continue;
+            }
+            changed.add(friendship);
+            if (friendship.getValue()) {
+                links[linkCount++] = pair;
+            } else {
+                unlinks[unlinkCount++] = pair;
+            }
+        }
+        graph.changeEdges(Arrays.copyOf(links, linkCount), Arrays.copyOf(unlinks, unlinkCount));
+        for (Map.Entry<Long, Boolean> friendship : changed) {
+            long pair = friendship.getKey();
+            friendshipIndexed((int) (pair >>> 32), (int) pair, friendship.getValue());
+        }
+    }
 
+    private static long friendshipPair(int id1, int id2) {
+        return (long) Math.min(id1, id2) << 32 | Math.max(id1, id2);
+    }
 
-    // Add a post to a user's profile
-    public void addUserPost(String username, String post) {
-        UserDirectory user = users.get(username);
+    // First page of the user's home feed: friends' posts, newest first
+    public FeedPage getHomeFeed(String username) {
+        return getHomeFeed(username, null, FeedService.DEFAULT_PAGE_SIZE);
+    }
 
-        if (user == null) {
-            System.out.println("User not found.");
-            return;
+    // The page after the one that returned cursor; an unknown user gets an empty page
+    public FeedPage getHomeFeed(String username, String cursor, int pageSize) {
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory user = users.get(username);
+            if (user == null) {
+                return new FeedPage(List.of(), null);
+            }
+            return feeds.page(graph, user.id(), cursor, pageSize);
+        } finally {
+            snapshotLock.readLock().unlock();
         }
+    }
 
-        if (post == null || post.trim().isEmpty()) {
-            System.out.println("Post content cannot be empty.");
-            return;
+
+    // Users whose username or name starts with prefix, ignoring case; for autocomplete
+    public List<UserDirectory> completeUsers(String prefix) {
+        return completeUsers(prefix, TypeaheadIndex.DEFAULT_LIMIT);
+    }
+
+    public List<UserDirectory> completeUsers(String prefix, int limit) {
+        if (prefix == null) {
+            return List.of();
+        }
+        snapshotLock.readLock().lock();
+        try {
+            FriendGraph current = graph;
+            List<UserDirectory> matches = new ArrayList<>();
+            for (int id : typeahead.complete(current, prefix, limit)) {
+                matches.add(current.user(id));
+            }
+            return matches;
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Posts containing every word of the query, newest first. OR separates
+    // alternatives and "quoted words" must appear together in that order.
+    public List<Post> searchPosts(String query) {
+        return searchPosts(query, PostSearchIndex.DEFAULT_LIMIT);
+    }
+
+    public List<Post> searchPosts(String query, int limit) {
+        if (query == null) {
+            return List.of();
+        }
+        snapshotLock.readLock().lock();
+        try {
+            return postIndex.search(graph, query, limit);
+        } finally {
+            snapshotLock.readLock().unlock();
         }
+    }
+
 
-        user.addPost(post);
-        System.out.println("Post added for " + user.getName());
-        saveData();
+    // Users in username order, a page at a time; pass null for the first page
+    public UserPage listUsers(String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            return new UserPage(List.of(), null);
+        }
+        snapshotLock.readLock().lock();
+        try {
+            return userOrder.users(graph, cursor, pageSize);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
     }
-    // Display all users in the network
+
+    // A user's friends in username order; an unknown user gets an empty page
+    public UserPage listFriends(String username, String cursor, int pageSize) {
+        if (pageSize <= 0) {
+            return new UserPage(List.of(), null);
+        }
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory user = users.get(username);
+            if (user == null) {
+                return new UserPage(List.of(), null);
+            }
+            return userOrder.friends(graph, graph.neighbors(user.id()), cursor, pageSize);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
     public void displayAllUsers() {
         System.out.println("All Users in the Social Network:");
         for (UserDirectory user : users.values()) {
@@ -205,12 +1042,26 @@ class SocialNetwork {
     // Display network connections (users and their friends)
     public void displayNetwork() {
         System.out.println("Social Network Connections:");
-        for (UserDirectory user : users.values()) {
-            System.out.print(user.getName() + " -> ");
-            for (UserDirectory friend : user.getFriends()) {
-                System.out.print(friend.getName() + " ");
-            }
-            System.out.println();
+        try (FriendGraph.Version version = pinGraph()) {
+            NetworkExporter.writeConnections(version.graph(), Channels.newChannel(System.out));
+        } catch (IOException e) {
+            NetworkLog.error("Error displaying network: " + e.getMessage());
+        }
+        System.out.flush();
+    }
+
+    // Streams the whole network to a file in the given format, from a pinned
+    // version of the graph; returns the number of bytes written
+    public long exportNetwork(Path file, NetworkExporter.Format format) throws IOException {
+        try (FriendGraph.Version version = pinGraph()) {
+            return NetworkExporter.export(version.graph(), format, file);
+        }
+    }
+
+    // Same, to a channel that is left open, e.g. a socket or stdout
+    public long exportNetwork(WritableByteChannel channel, NetworkExporter.Format format) throws IOException {
+        try (FriendGraph.Version version = pinGraph()) {
+            return NetworkExporter.export(version.graph(), format, channel);
         }
     }
     // Display all posts by a user
@@ -227,29 +1078,167 @@ class SocialNetwork {
     }
 
     public void bfsTraversal(String startUserId) {
-        UserDirectory startUser = users.get(startUserId);
-        if (startUser == null) {
+        // Times the search only, not printing the result
+        long start = System.nanoTime();
+        BfsResult result = graph.size() >= PARALLEL_BFS_USERS
+                ? parallelBreadthFirstSearch(startUserId, BreadthFirstSearch.UNLIMITED)
+                : breadthFirstSearch(startUserId, BreadthFirstSearch.UNLIMITED);
+        metrics.record(NetworkMetrics.Operation.BFS_TRAVERSAL, start);
+        if (result == null) {
             System.out.println("User not found.");
             return;
         }
 
-        Set<UserDirectory> visited = new HashSet<>();
-        Queue<UserDirectory> queue = new LinkedList<>();
-        queue.offer(startUser);
-        visited.add(startUser);
+        List<UserDirectory> order = result.visitOrder();
+        StringBuilder line = new StringBuilder();
+        for (UserDirectory user : order) {
+            line.append(user.getName()).append(" -> ");
+        }
+        System.out.println("BFS Traversal from " + order.get(0).getName() + ":");
+        System.out.println(line);
+    }
 
-        System.out.println("BFS Traversal from " + startUser.getName() + ":");
-        while (!queue.isEmpty()) {
-            UserDirectory current = queue.poll();
-            System.out.print(current.getName() + " -> ");
-            for (UserDirectory friend : current.getFriends()) {
-                if (!visited.contains(friend)) {
-                    queue.offer(friend);
-                    visited.add(friend);
-                }
+    // Shortest chain of friends from one user to another, both included;
+    // empty if either user is unknown or they are not connected
+    public List<UserDirectory> shortestPath(String username1, String username2) {
+        return shortestPath(username1, username2, ShortestPath.UNLIMITED);
+    }
+
+    // Same, giving up on chains longer than maxHops
+    public List<UserDirectory> shortestPath(String username1, String username2, int maxHops) {
+        FriendGraph.Version version;
+        int id1;
+        int id2;
+        // Ids and version come from the same graph; the search runs after unlocking
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory userId1 = users.get(username1);
+            UserDirectory userId2 = users.get(username2);
+
+            if (userId1 == null || userId2 == null) {
+                return List.of();
             }
+            id1 = userId1.id();
+            id2 = userId2.id();
+            version = graph.pin();
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+
+        try (version) {
+            FriendGraph current = version.graph();
+            List<UserDirectory> path = new ArrayList<>();
+            for (int id : ShortestPath.find(current, id1, id2, maxHops)) {
+                path.add(current.user(id));
+            }
+            return path;
+        }
+    }
+
+    // Id of the user's community (connected component), or -1 for an unknown
+    // user. Ids are only comparable until the next friendship change.
+    public int getCommunityId(String username) {
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory user = users.get(username);
+            return user == null ? -1 : connectivity.component(graph, user.id());
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Number of travellers in the user's community, 0 for an unknown user
+    public int getCommunitySize(String username) {
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory user = users.get(username);
+            return user == null ? 0 : connectivity.componentSize(graph, user.id());
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Whether some chain of friends links the two users
+    public boolean isReachable(String username1, String username2) {
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory userId1 = users.get(username1);
+            UserDirectory userId2 = users.get(username2);
+
+            if (userId1 == null || userId2 == null) {
+                return false;
+            }
+
+            return connectivity.connected(graph, userId1.id(), userId2.id());
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    public int getCommunityCount() {
+        snapshotLock.readLock().lock();
+        try {
+            return connectivity.componentCount(graph);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Biggest communities first
+    public List<Community> getLargestCommunities(int limit) {
+        snapshotLock.readLock().lock();
+        try {
+            FriendGraph current = graph;
+            List<Community> communities = new ArrayList<>();
+            for (int root : connectivity.largest(current, limit)) {
+                communities.add(new Community(current.user(root), connectivity.componentSize(current, root)));
+            }
+            return communities;
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Hop distances and BFS-tree parents from a user, up to maxDepth hops;
+    // null if the user does not exist
+    public BfsResult breadthFirstSearch(String username, int maxDepth) {
+        // Searches a pinned version, so the result is one consistent picture
+        FriendGraph.Version version;
+        int id;
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory user = users.get(username);
+            if (user == null) {
+                return null;
+            }
+            id = user.id();
+            version = graph.pin();
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        try (version) {
+            return BreadthFirstSearch.run(version.graph(), id, maxDepth);
+        }
+    }
+
+    // Same, with each level expanded across the common fork-join pool
+    public BfsResult parallelBreadthFirstSearch(String username, int maxDepth) {
+        FriendGraph.Version version;
+        int id;
+        snapshotLock.readLock().lock();
+        try {
+            UserDirectory user = users.get(username);
+            if (user == null) {
+                return null;
+            }
+            id = user.id();
+            version = graph.pin();
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        try (version) {
+            return ParallelBreadthFirstSearch.run(version.graph(), id, maxDepth, ForkJoinPool.commonPool());
         }
-        System.out.println();
     }
 
 
@@ -273,7 +1262,10 @@ class pathfindersMain {
             System.out.println("8. Add User Post");
             System.out.println("9. Display Network");
             System.out.println("10. BFS Traversal");
-            System.out.println("11. Exit");
+            System.out.println("11. Degrees of Separation");
+            System.out.println("12. Home Feed");
+            System.out.println("13. Search Posts");
+            System.out.println("14. Exit");
             System.out.print("Enter your choice: ");
 
             int choice = scanner.nextInt();
@@ -312,8 +1304,9 @@ class pathfindersMain {
                 case 5 -> {
                     System.out.print("Enter Username: ");
                     String userId = scanner.nextLine();
-                    Set<UserDirectory> suggestions = network.suggestFriends(userId);
-                    suggestions.forEach(user -> System.out.println(user.getName()));
+                    List<FriendSuggestion> suggestions = network.suggestFriends(userId);
+                    suggestions.forEach(suggestion -> System.out.println(suggestion.getUser().getName()
+                            + " (" + suggestion.getMutualFriends() + " mutual)"));
                 }
                 case 6 -> network.displayAllUsers();
                 case 7 -> {
@@ -334,10 +1327,44 @@ class pathfindersMain {
                     String startUserId = scanner.nextLine();
                     network.bfsTraversal(startUserId);
                 }
-                case 11 -> running = false;
+                case 11 -> {
+                    System.out.print("Enter First Username: ");
+                    String userId1 = scanner.nextLine();
+                    System.out.print("Enter Second Username: ");
+                    String userId2 = scanner.nextLine();
+                    List<UserDirectory> path = network.shortestPath(userId1, userId2);
+                    if (path.isEmpty()) {
+                        System.out.println("No connection found.");
+                    } else {
+                        System.out.println((path.size() - 1) + " degrees of separation:");
+                        System.out.println(String.join(" -> ", path.stream().map(UserDirectory::getName).toList()));
+                    }
+                }
+                case 12 -> {
+                    System.out.print("Enter Username: ");
+                    String userId = scanner.nextLine();
+                    for (Post post : network.getHomeFeed(userId).getPosts()) {
+                        System.out.println("- " + post.getAuthor().getName() + ": " + post.getText());
+                    }
+                }
+                case 13 -> {
+                    System.out.print("Enter Search Words: ");
+                    String query = scanner.nextLine();
+                    List<Post> found = network.searchPosts(query);
+                    if (found.isEmpty()) {
+                        System.out.println("No posts found.");
+                    }
+                    for (Post post : found) {
+                        System.out.println("- " + post.getAuthor().getName() + ": " + post.getText());
+                    }
+                }
+                case 14 -> running = false;
                 default -> System.out.println("Invalid choice.");
             }
+            // Show the operation's messages before the menu comes back
+            NetworkLog.flush();
         }
+        network.close();
         System.out.println("Exiting pathfinders. thanks for visiting us!");
     }
 }
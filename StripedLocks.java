@@ -0,0 +1,57 @@
+package socialMediaPlatform;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fixed pool of locks shared by many keys. Two-key operations always take the
+// lower stripe first, so two threads locking the same pair in opposite order
+// cannot deadlock.
+class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    StripedLocks(int minimumStripes) {
+        int count = Integer.highestOneBit(Math.max(1, minimumStripes - 1)) << 1;
+        stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = count - 1;
+    }
+
+    void lock(int key) {
+        stripes[stripe(key)].lock();
+    }
+
+    void unlock(int key) {
+        stripes[stripe(key)].unlock();
+    }
+
+    void lock(int key1, int key2) {
+        int first = stripe(key1);
+        int second = stripe(key2);
+        if (first == second) {
+            stripes[first].lock();
+            return;
+        }
+        stripes[Math.min(first, second)].lock();
+        stripes[Math.max(first, second)].lock();
+    }
+
+    void unlock(int key1, int key2) {
+        int first = stripe(key1);
+        int second = stripe(key2);
+        if (first == second) {
+            stripes[first].unlock();
+            return;
+        }
+        stripes[Math.max(first, second)].unlock();
+        stripes[Math.min(first, second)].unlock();
+    }
+
+    private int stripe(int key) {
+        // Spread the bits so consecutive ids and similar hashes use different stripes
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,220 @@
+package socialMediaPlatform;
+
+import java.util.*;
+
+// Prefix lookup over usernames and lowercased full names for autocomplete.
+// Each kind of key lives in a sorted array searched by binary search. New
+// users go into a small sorted side array that is merged into the main one
+// once it grows past about the square root of its size. That keeps inserts
+// cheap, and a lookup costs two binary searches plus the matches it returns.
+class TypeaheadIndex {
+
+    static final int DEFAULT_LIMIT = 8;
+
+    private static final int MIN_PENDING = 256;
+
+    // Sorted (key, user id) pairs
+    private static final class SortedKeys {
+        private String[] keys = new String[0];
+        private int[] ids = new int[0];
+        private String[] pendingKeys = new String[MIN_PENDING];
+        private int[] pendingIds = new int[MIN_PENDING];
+        private int pendingCount;
+
+        void add(String key, int id) {
+            if (pendingCount == pendingKeys.length) {
+                if (pendingCount * (long) pendingCount >= keys.length) {
+                    merge();
+                } else {
+                    pendingKeys = Arrays.copyOf(pendingKeys, pendingCount * 2);
+                    pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+                }
+            }
+            int at = insertionPoint(pendingKeys, pendingCount, key);
+            System.arraycopy(pendingKeys, at, pendingKeys, at + 1, pendingCount - at);
+            System.arraycopy(pendingIds, at, pendingIds, at + 1, pendingCount - at);
+            pendingKeys[at] = key;
+            pendingIds[at] = id;
+            pendingCount++;
+        }
+
+        // Bulk loading: appends unsorted, then load() sorts everything once
+        void append(String key, int id) {
+            if (pendingCount == pendingKeys.length) {
+                pendingKeys = Arrays.copyOf(pendingKeys, pendingCount * 2);
+                pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+            }
+            pendingKeys[pendingCount] = key;
+            pendingIds[pendingCount++] = id;
+        }
+
+        void load() {
+            Integer[] order = new Integer[pendingCount];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            String[] unsorted = pendingKeys;
+            Arrays.sort(order, (a, b) -> unsorted[a].compareTo(unsorted[b]));
+            keys = new String[order.length];
+            ids = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                keys[i] = unsorted[order[i]];
+                ids[i] = pendingIds[order[i]];
+            }
+            pendingKeys = new String[MIN_PENDING];
+            pendingIds = new int[MIN_PENDING];
+            pendingCount = 0;
+        }
+
+        // Moves every entry to its new id; the keys, and so their order, stay the same
+        void remap(int[] newIds) {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = newIds[ids[i]];
+            }
+            for (int i = 0; i < pendingCount; i++) {
+                pendingIds[i] = newIds[pendingIds[i]];
+            }
+        }
+
+        // Adds the ids of keys starting with prefix, in key order, until limit ids are collected
+        void collect(String prefix, int limit, LinkedHashSet<Integer> out) {
+            int i = insertionPoint(keys, keys.length, prefix);
+            int j = insertionPoint(pendingKeys, pendingCount, prefix);
+            while (out.size() < limit) {
+                boolean mainMatches = i < keys.length && keys[i].startsWith(prefix);
+                boolean pendingMatches = j < pendingCount && pendingKeys[j].startsWith(prefix);
+                if (mainMatches && (!pendingMatches || keys[i].compareTo(pendingKeys[j]) <= 0)) {
+                    out.add(ids[i++]);
+                } else if (pendingMatches) {
+                    out.add(pendingIds[j++]);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void merge() {
+            String[] mergedKeys = new String[keys.length + pendingCount];
+            int[] mergedIds = new int[mergedKeys.length];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < mergedKeys.length; k++) {
+                if (j == pendingCount || (i < keys.length && keys[i].compareTo(pendingKeys[j]) <= 0)) {
+                    mergedKeys[k] = keys[i];
+                    mergedIds[k] = ids[i++];
+                } else {
+                    mergedKeys[k] = pendingKeys[j];
+                    mergedIds[k] = pendingIds[j++];
+                }
+            }
+            keys = mergedKeys;
+            ids = mergedIds;
+            Arrays.fill(pendingKeys, 0, pendingCount, null);
+            pendingCount = 0;
+        }
+
+        // First index whose key is >= key
+        private static int insertionPoint(String[] sorted, int length, String key) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sorted[mid].compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private SortedKeys usernames = new SortedKeys();
+    private SortedKeys names = new SortedKeys();
+    // Users below this id were indexed by the initial scan; -1 until then
+    private int scanned = -1;
+
+    // Call after the user was registered with the graph
+    synchronized void userAdded(UserDirectory user) {
+        // Before the first lookup there is nothing to keep current
+        if (scanned >= 0 && user.id() >= scanned) {
+            index(user.id(), user.getUsername(), user.getName(), false);
+        }
+    }
+
+    // Follows a renumbering such as a compaction's, where newIds maps every
+    // old id to its new one, instead of scanning the users again
+    synchronized void remap(int[] newIds) {
+        if (scanned < 0) {
+            return;
+        }
+        usernames.remap(newIds);
+        names.remap(newIds);
+        scanned = newIds.length;
+    }
+
+    // Drops everything, e.g. after the users were read back
+    synchronized void clear() {
+        usernames = new SortedKeys();
+        names = new SortedKeys();
+        scanned = -1;
+    }
+
+    // Ids of up to limit users whose username, full name or a later word of
+    // the name starts with prefix, ignoring case. Username matches come first.
+    synchronized int[] complete(FriendGraph graph, String prefix, int limit) {
+        String key = prefix.trim().toLowerCase(Locale.ROOT);
+        if (key.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+        if (scanned < 0) {
+            build(graph);
+        }
+        LinkedHashSet<Integer> matches = new LinkedHashSet<>();
+        usernames.collect(key, limit, matches);
+        names.collect(key, limit, matches);
+        int[] ids = new int[matches.size()];
+        int i = 0;
+        for (int id : matches) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    // Reads only usernames and names, so users still in a mapped snapshot are not built
+    private void build(FriendGraph graph) {
+        int size = graph.size();
+        for (int id = 0; id < size; id++) {
+            index(id, graph.username(id), graph.name(id), true);
+        }
+        usernames.load();
+        names.load();
+        scanned = size;
+    }
+
+    private void index(int id, String username, String name, boolean bulk) {
+        add(usernames, username.toLowerCase(Locale.ROOT), id, bulk);
+        if (name == null) {
+            return;
+        }
+        name = name.trim().toLowerCase(Locale.ROOT);
+        if (name.isEmpty()) {
+            return;
+        }
+        // The whole name, and from each later word on, so "smi" finds "Jo Smith"
+        add(names, name, id, bulk);
+        for (int i = 1; i < name.length(); i++) {
+            if (Character.isWhitespace(name.charAt(i - 1)) && !Character.isWhitespace(name.charAt(i))) {
+                add(names, name.substring(i), id, bulk);
+            }
+        }
+    }
+
+    private static void add(SortedKeys keys, String key, int id, boolean bulk) {
+        if (bulk) {
+            keys.append(key, id);
+        } else {
+            keys.add(key, id);
+        }
+    }
+}
@@ -2,16 +2,33 @@ package socialMediaPlatform;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class UserDirectory implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private final String username;
-    private final String name;
-    private final Set<UserDirectory> friends;
-    private final Queue<String> posts;
-    private int followerCount;
-    private int followingCount;
+    // Keeps the serialized form of the original HashSet-based class, so old
+    // Data_Network.ser files can still be read for conversion
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("username", String.class),
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("friends", Set.class),
+            new ObjectStreamField("posts", Queue.class),
+            new ObjectStreamField("followerCount", int.class),
+            new ObjectStreamField("followingCount", int.class)
+    };
+
+    private String username;
+    private String name;
+    private PostTimeline posts;
+    private AtomicInteger followerCount;
+    private AtomicInteger followingCount;
+    // Friendships live in the network's FriendGraph under this id
+    private transient FriendGraph graph;
+    private transient int id = -1;
+    private transient Set<UserDirectory> friendView;
+    // Friends read from a legacy serialized file, until they are put in a graph
+    private transient Set<UserDirectory> legacyFriends;
 
     public UserDirectory(String username, String name) {
         if (username == null || username.isBlank()) {
@@ -23,8 +40,9 @@ class UserDirectory implements Serializable {
 
         this.username = username;
         this.name = name;
-        this.friends = new HashSet<>();
-        this.posts = new LinkedList<>();
+        this.posts = new PostTimeline(true);
+        this.followerCount = new AtomicInteger();
+        this.followingCount = new AtomicInteger();
     }
 
         public String getUsername() {
@@ -37,62 +55,132 @@ class UserDirectory implements Serializable {
         }
 
 
+        // Read-only view over this user's row in the friend graph
         public Set<UserDirectory> getFriends() {
-            return friends;
+            if (friendView == null) {
+                friendView = new FriendView();
+            }
+            return friendView;
         }
 
 
-        public Queue<String> getPosts() {
-            return posts;
+        // Post texts, oldest first
+        public List<String> getPosts() {
+            Post[] newest = posts.newestFirst();
+            List<String> texts = new ArrayList<>(newest.length);
+            for (int i = newest.length - 1; i >= 0; i--) {
+                // Skips a post evicted by a concurrent add
+                String text = newest[i].getText();
+                if (text != null) {
+                    texts.add(text);
+                }
+            }
+            return texts;
+        }
+
+        // Timestamped posts, newest first
+        public List<Post> getTimeline() {
+            return Arrays.asList(posts.newestFirst());
+        }
+
+        Post[] timeline() {
+            return posts.newestFirst();
         }
 
         public int getFollowerCount() {
-            return followerCount;
+            return followerCount.get();
         }
 
         public int getFollowingCount() {
-            return followingCount;
+            return followingCount.get();
         }
 
         public void incrementFollowerCount() {
-            followerCount++;
+            followerCount.incrementAndGet();
         }
 
 
         public void incrementFollowingCount() {
-            followingCount++;
+            followingCount.incrementAndGet();
         }
 
 
         public void decrementFollowerCount() {
-            followerCount = Math.max(0, followerCount - 1);
+            followerCount.updateAndGet(count -> Math.max(0, count - 1));
         }
 
 
         public void decrementFollowingCount() {
-            followingCount = Math.max(0, followingCount - 1);
+            followingCount.updateAndGet(count -> Math.max(0, count - 1));
+        }
+
+        void attach(FriendGraph graph, int id) {
+            this.graph = graph;
+            this.id = id;
+        }
+
+        FriendGraph graph() {
+            return graph;
+        }
+
+        int id() {
+            return id;
+        }
+
+        // Friends read from a legacy .ser file, or null; cleared once taken
+        Set<UserDirectory> takeLegacyFriends() {
+            Set<UserDirectory> result = legacyFriends;
+            legacyFriends = null;
+            return result;
+        }
+
+        // Used when reading a snapshot back
+        void restoreCounts(int followerCount, int followingCount) {
+            this.followerCount.set(followerCount);
+            this.followingCount.set(followingCount);
         }
     public void addFriend(UserDirectory user) {
-        this.friends.add(user);
-        user.getFriends().add(this);
+        requireSameGraph(user);
+        graph.link(id, user.id);
     }
 
 
     public void removeFriend(UserDirectory user) {
-        this.friends.remove(user);
-        user.getFriends().remove(this);
+        requireSameGraph(user);
+        graph.unlink(id, user.id);
     }
 
+    private void requireSameGraph(UserDirectory user) {
+        if (graph == null || user.graph != graph) {
+            throw new IllegalStateException("Both users must belong to the same network.");
+        }
+    }
+
+
+    public Post addPost(String post) {
+        return addPost(post, System.currentTimeMillis(), PostTimeline.DEFAULT_CAPACITY);
+    }
 
-    public void addPost(String post) {
+    // Keeps at most capacity posts, dropping the oldest
+    Post addPost(String post, long timestamp, int capacity) {
         if (post == null || post.trim().isEmpty()) {
-            System.out.println("Post content cannot be empty.");
-            return;
-        }
-        if (posts.size() >= 5) {
-            posts.poll();
+            NetworkLog.warn("Post content cannot be empty.");
+            return null;
         }
-        posts.offer(post);
+        Post added = new Post(this, post, timestamp);
+        posts.add(added, capacity);
+        return added;
+    }
+
+    // Used when reading posts back from storage, which already applied the cap
+    void restorePost(String post, long timestamp) {
+        posts.restore(new Post(this, post, timestamp));
+    }
+
+    // Drops every post and frees its text; for a user object that is being
+    // thrown away, e.g. one left behind in a replaced graph
+    void discardPosts() {
+        posts.clear();
     }
 
 
@@ -101,9 +189,76 @@ class UserDirectory implements Serializable {
             return "UserDirectory" +
                     "username='" + username + '\'' +
                     ", name='" + name + '\'' +
-                    ", friends=" + friends.size() +
+                    ", friends=" + getFriends().size() +
                     ", posts=" + posts.size() +
-                    ", followerCount=" + followerCount +
-                    ", followingCount=" + followingCount;
+                    ", followerCount=" + followerCount.get() +
+                    ", followingCount=" + followingCount.get();
+        }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("username", username);
+        fields.put("name", name);
+        fields.put("friends", new HashSet<>(getFriends()));
+        fields.put("posts", new LinkedList<>(getPosts()));
+        fields.put("followerCount", followerCount.get());
+        fields.put("followingCount", followingCount.get());
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        username = (String) fields.get("username", null);
+        name = (String) fields.get("name", null);
+        legacyFriends = (Set<UserDirectory>) fields.get("friends", null);
+        Queue<String> storedPosts = (Queue<String>) fields.get("posts", null);
+        posts = new PostTimeline(true);
+        if (storedPosts != null) {
+            // The old format had no timestamps
+            for (String post : storedPosts) {
+                restorePost(post, 0);
+            }
+        }
+        followerCount = new AtomicInteger(fields.get("followerCount", 0));
+        followingCount = new AtomicInteger(fields.get("followingCount", 0));
+        id = -1;
+    }
+
+    private final class FriendView extends AbstractSet<UserDirectory> {
+        @Override
+        public int size() {
+            return graph == null ? 0 : graph.degree(id);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof UserDirectory) || graph == null) {
+                return false;
+            }
+            UserDirectory other = (UserDirectory) o;
+            return other.graph == graph && other.id != id && graph.connected(id, other.id);
+        }
+
+        @Override
+        public Iterator<UserDirectory> iterator() {
+            int[] row = graph == null ? new int[0] : graph.neighbors(id);
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < row.length;
+                }
+
+                @Override
+                public UserDirectory next() {
+                    if (next >= row.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return graph.user(row[next++]);
+                }
+            };
         }
     }
+}
@@ -0,0 +1,23 @@
+package socialMediaPlatform;
+
+import java.util.List;
+
+// One page of users in username order. Pass the cursor back to get the users
+// that follow; it is null once there are no more.
+final class UserPage {
+    private final List<UserDirectory> users;
+    private final String nextCursor;
+
+    UserPage(List<UserDirectory> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<UserDirectory> getUsers() {
+        return users;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,151 @@
+package socialMediaPlatform;
+
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+
+// Pages through users in username order without sorting the whole network.
+// Snapshots number users by username, so the ids loaded from one are already
+// in order and a cursor is found by binary search. Users registered since then
+// are kept in a small id list sorted by username, and the two runs are merged
+// page by page. Once that list passes the square root of the main order it is
+// folded in, as TypeaheadIndex does, so filing a user stays cheap however
+// long the network runs without a compaction. The cursor is the last username
+// returned, so paging stays in step across compactions that renumber users.
+class UsernameOrder {
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MIN_ADDED = 16;
+
+    // Ids below this came from the snapshot
+    private final int sortedCount;
+    // Main order once later users have been folded in; null means ids
+    // 0..sortedCount-1
+    private int[] order;
+    private int orderCount;
+    // Later ids not folded in yet, by username
+    private int[] added = new int[MIN_ADDED];
+    private int addedCount;
+
+    UsernameOrder(int sortedCount) {
+        this.sortedCount = sortedCount;
+        this.orderCount = sortedCount;
+    }
+
+    // Users after the cursor (null for the first page)
+    synchronized UserPage users(FriendGraph graph, String cursor, int pageSize) {
+        catchUp(graph);
+        int[] main = order;
+        int[] sortedAdded = added;
+        IntUnaryOperator first = main == null ? i -> i : i -> main[i];
+        return merge(graph, first, orderCount, i -> sortedAdded[i], addedCount, cursor, pageSize);
+    }
+
+    // Friends from a friend row, in the same order
+    UserPage friends(FriendGraph graph, int[] row, String cursor, int pageSize) {
+        // Rows are sorted by id, so the snapshot ids come first and are in order
+        int split = Arrays.binarySearch(row, sortedCount);
+        split = split < 0 ? -split - 1 : split;
+        int[] later = Arrays.copyOfRange(row, split, row.length);
+        sortByUsername(graph, later);
+        return merge(graph, i -> row[i], split, i -> later[i], later.length, cursor, pageSize);
+    }
+
+    // Files the users registered since the last call
+    private void catchUp(FriendGraph graph) {
+        int size = graph.size();
+        for (int id = orderCount + addedCount; id < size; id++) {
+            if (addedCount == added.length) {
+                if (addedCount * (long) addedCount >= orderCount) {
+                    foldIn(graph);
+                } else {
+                    added = Arrays.copyOf(added, addedCount * 2);
+                }
+            }
+            String username = graph.user(id).getUsername();
+            int at = firstAfter(graph, i -> added[i], addedCount, username);
+            System.arraycopy(added, at, added, at + 1, addedCount - at);
+            added[at] = id;
+            addedCount++;
+        }
+    }
+
+    // Merges the added ids into the main order. Each one is placed by binary
+    // search and the runs between them are copied, so only a few usernames
+    // per added id are read.
+    private void foldIn(FriendGraph graph) {
+        int[] main = order;
+        IntUnaryOperator ids = main == null ? i -> i : i -> main[i];
+        int[] merged = new int[orderCount + addedCount];
+        int from = 0;
+        int k = 0;
+        for (int j = 0; j < addedCount; j++) {
+            int start = from;
+            String username = graph.user(added[j]).getUsername();
+            int at = start + firstAfter(graph, i -> ids.applyAsInt(start + i), orderCount - start, username);
+            for (; from < at; from++) {
+                merged[k++] = ids.applyAsInt(from);
+            }
+            merged[k++] = added[j];
+        }
+        for (; from < orderCount; from++) {
+            merged[k++] = ids.applyAsInt(from);
+        }
+        order = merged;
+        orderCount = merged.length;
+        added = new int[MIN_ADDED];
+        addedCount = 0;
+    }
+
+    private static UserPage merge(FriendGraph graph, IntUnaryOperator first, int firstLength,
+                                  IntUnaryOperator second, int secondLength, String cursor, int pageSize) {
+        int i = cursor == null ? 0 : firstAfter(graph, first, firstLength, cursor);
+        int j = cursor == null ? 0 : firstAfter(graph, second, secondLength, cursor);
+        List<UserDirectory> page = new ArrayList<>(Math.min(pageSize, firstLength - i + secondLength - j));
+        UserDirectory nextFirst = i < firstLength ? graph.user(first.applyAsInt(i)) : null;
+        UserDirectory nextSecond = j < secondLength ? graph.user(second.applyAsInt(j)) : null;
+        while (page.size() < pageSize && (nextFirst != null || nextSecond != null)) {
+            if (nextSecond == null || (nextFirst != null
+                    && nextFirst.getUsername().compareTo(nextSecond.getUsername()) < 0)) {
+                page.add(nextFirst);
+                i++;
+                nextFirst = i < firstLength ? graph.user(first.applyAsInt(i)) : null;
+            } else {
+                page.add(nextSecond);
+                j++;
+                nextSecond = j < secondLength ? graph.user(second.applyAsInt(j)) : null;
+            }
+        }
+        boolean more = nextFirst != null || nextSecond != null;
+        String nextCursor = more && !page.isEmpty() ? page.get(page.size() - 1).getUsername() : null;
+        return new UserPage(page, nextCursor);
+    }
+
+    // First position in [0, length) whose username sorts after the given one
+    private static int firstAfter(FriendGraph graph, IntUnaryOperator ids, int length, String username) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (graph.user(ids.applyAsInt(mid)).getUsername().compareTo(username) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void sortByUsername(FriendGraph graph, int[] ids) {
+        if (ids.length < 2) {
+            return;
+        }
+        UserDirectory[] users = new UserDirectory[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            users[i] = graph.user(ids[i]);
+        }
+        Arrays.sort(users, Comparator.comparing(UserDirectory::getUsername));
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = users[i].id();
+        }
+    }
+}
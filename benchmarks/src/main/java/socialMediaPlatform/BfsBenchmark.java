@@ -0,0 +1,49 @@
+package socialMediaPlatform;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+// Whole-component BFS from the biggest hub of a power-law graph, single
+// threaded versus spread over the common fork-join pool
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class BfsBenchmark {
+
+    @Param({"100000", "1000000"})
+    int users;
+
+    @Param({"16"})
+    int averageDegree;
+
+    @Param({"2.3"})
+    double exponent;
+
+    private FriendGraph graph;
+    private int hub;
+
+    @Setup(Level.Trial)
+    public void buildGraph() {
+        graph = SyntheticGraphs.powerLaw(users, averageDegree, exponent, 42);
+        for (int id = 1; id < graph.size(); id++) {
+            if (graph.degree(id) > graph.degree(hub)) {
+                hub = id;
+            }
+        }
+    }
+
+    @Benchmark
+    public int sequential() {
+        return BreadthFirstSearch.run(graph, hub, BreadthFirstSearch.UNLIMITED).reachedCount();
+    }
+
+    @Benchmark
+    public int parallel() {
+        return ParallelBreadthFirstSearch.run(graph, hub, BreadthFirstSearch.UNLIMITED, ForkJoinPool.commonPool()).reachedCount();
+    }
+}
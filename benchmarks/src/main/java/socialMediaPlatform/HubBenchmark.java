@@ -0,0 +1,65 @@
+package socialMediaPlatform;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Friendships of a single hub, one at a time and as one changeEdges group.
+// The hub's row is a HubRow, so neither should grow with hubDegree. Both add
+// the same friends and remove them again.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class HubBenchmark {
+
+    private static final int CHANGES = 100;
+
+    @Param({"10000", "1000000"})
+    int hubDegree;
+
+    private FriendGraph graph;
+    private long[] edges;
+    private final long[] none = new long[0];
+
+    @Setup(Level.Trial)
+    public void buildGraph() {
+        graph = new FriendGraph(hubDegree + CHANGES + 1);
+        for (int id = 0; id <= hubDegree + CHANGES; id++) {
+            graph.register(new UserDirectory(SyntheticGraphs.username(id), "Traveler " + id));
+        }
+        // User 0 is the hub, friends with users 1..hubDegree; an edge with
+        // user 0 packs to just the friend's id
+        long[] friends = new long[hubDegree];
+        for (int id = 1; id <= hubDegree; id++) {
+            friends[id - 1] = id;
+        }
+        graph.changeEdges(friends, none);
+        edges = new long[CHANGES];
+        for (int i = 0; i < CHANGES; i++) {
+            edges[i] = hubDegree + 1 + i;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * CHANGES)
+    public long oneAtATime() {
+        for (long edge : edges) {
+            graph.link(0, (int) edge);
+        }
+        for (long edge : edges) {
+            graph.unlink(0, (int) edge);
+        }
+        return graph.edgeCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * CHANGES)
+    public long batched() {
+        graph.changeEdges(edges, none);
+        graph.changeEdges(none, edges);
+        return graph.edgeCount();
+    }
+}
@@ -0,0 +1,83 @@
+package socialMediaPlatform;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Time to write a snapshot (what compaction does in place of the old
+// saveData) and to open one in each storage mode (loadData). Each call is
+// timed on its own because one takes up to seconds at a million users.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class PersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int users;
+
+    @Param({"ERDOS_RENYI", "BARABASI_ALBERT", "WATTS_STROGATZ"})
+    String model;
+
+    @Param({"16"})
+    int averageDegree;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeSnapshot() throws IOException {
+        FriendGraph graph = SyntheticGraphs.Model.valueOf(model).generate(users, averageDegree, 42);
+        SyntheticGraphs.addPosts(graph, 3, 42);
+        directory = Files.createTempDirectory("persistence-benchmark");
+        NetworkSnapshot.write(directory.resolve(SocialNetwork.DATA_FILE), graph, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        SyntheticGraphs.deleteRecursively(directory);
+    }
+
+    // Open only around compact(), so the load benchmarks never share the log file
+    @State(Scope.Benchmark)
+    public static class OpenNetwork {
+        SocialNetwork network;
+
+        @Setup(Level.Iteration)
+        public void open(PersistenceBenchmark benchmark) {
+            network = benchmark.open(SocialNetwork.StorageMode.HEAP);
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            network.close();
+        }
+    }
+
+    @Benchmark
+    public void compact(OpenNetwork open) {
+        open.network.compact();
+    }
+
+    @Benchmark
+    public int loadMapped() {
+        try (SocialNetwork opened = open(SocialNetwork.StorageMode.MAPPED)) {
+            return opened.getUsers().size();
+        }
+    }
+
+    @Benchmark
+    public int loadHeap() {
+        try (SocialNetwork opened = open(SocialNetwork.StorageMode.HEAP)) {
+            return opened.getUsers().size();
+        }
+    }
+
+    private SocialNetwork open(SocialNetwork.StorageMode mode) {
+        return new SocialNetwork(directory, mode, MutationLog.SyncMode.ASYNC, PostTimeline.DEFAULT_CAPACITY);
+    }
+}
@@ -0,0 +1,80 @@
+package socialMediaPlatform;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Map;
+
+// Compares the legacy ObjectOutputStream snapshot with NetworkSnapshot.
+// Usage: java socialMediaPlatform.SnapshotBenchmark [userCount ...]
+public class SnapshotBenchmark {
+
+    private static final int AVERAGE_DEGREE = 10;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 100_000, 1_000_000} : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        Path directory = Files.createTempDirectory("snapshot-benchmark");
+        System.out.printf("%-10s %-8s %14s %12s %12s%n", "users", "format", "bytes", "save ms", "load ms");
+        for (int size : sizes) {
+            FriendGraph graph = SyntheticGraphs.uniform(size, AVERAGE_DEGREE, 42);
+            benchmarkLegacy(directory.resolve("legacy-" + size + ".ser"), SyntheticGraphs.byUsername(graph));
+            benchmarkBinary(directory.resolve("binary-" + size + ".snap"), graph);
+        }
+    }
+
+    // The legacy writer recurses along friend chains, so it gets the same
+    // oversized stack that NetworkSnapshot.readLegacy uses
+    private static void benchmarkLegacy(Path file, Map<String, UserDirectory> users) throws IOException {
+        long[] saveNanos = new long[1];
+        Throwable[] error = new Throwable[1];
+        Thread writer = new Thread(null, () -> {
+            long saveStart = System.nanoTime();
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeObject(users);
+            } catch (Throwable t) {
+                error[0] = t;
+            }
+            saveNanos[0] = System.nanoTime() - saveStart;
+        }, "legacy-snapshot-writer", 1L << 30);
+        writer.start();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (error[0] != null) {
+            System.out.printf("%-10d %-8s %s%n", users.size(), "legacy", "failed: " + error[0]);
+            Files.deleteIfExists(file);
+            return;
+        }
+
+        long loadStart = System.nanoTime();
+        NetworkSnapshot.readLegacy(file);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        report(users.size(), "legacy", Files.size(file), saveNanos[0], loadNanos);
+        Files.delete(file);
+    }
+
+    private static void benchmarkBinary(Path file, FriendGraph graph) throws IOException {
+        long saveStart = System.nanoTime();
+        NetworkSnapshot.write(file, graph, 0);
+        long saveNanos = System.nanoTime() - saveStart;
+
+        long loadStart = System.nanoTime();
+        NetworkSnapshot.read(file);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        report(graph.size(), "binary", Files.size(file), saveNanos, loadNanos);
+        Files.delete(file);
+    }
+
+    private static void report(int users, String format, long bytes, long saveNanos, long loadNanos) {
+        System.out.printf("%-10d %-8s %14d %12d %12d%n", users, format, bytes,
+                saveNanos / 1_000_000, loadNanos / 1_000_000);
+    }
+}
@@ -0,0 +1,134 @@
+package socialMediaPlatform;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Throughput and latency percentiles of the public SocialNetwork operations on
+// a synthetic network, opened from a snapshot in a temporary directory the
+// same way the application opens data/. Users are picked at random with a
+// fixed seed per thread, so runs are comparable.
+//
+// bfsTraversal prints every user it reaches, so breadthFirstSearch, the
+// traversal behind it, is measured instead.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class SocialNetworkBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int users;
+
+    @Param({"ERDOS_RENYI", "BARABASI_ALBERT", "WATTS_STROGATZ"})
+    String model;
+
+    @Param({"16"})
+    int averageDegree;
+
+    private Path directory;
+    private SocialNetwork network;
+
+    @Setup(Level.Trial)
+    public void openNetwork() throws IOException {
+        FriendGraph graph = SyntheticGraphs.Model.valueOf(model).generate(users, averageDegree, 42);
+        SyntheticGraphs.addPosts(graph, 3, 42);
+        directory = Files.createTempDirectory("social-network-benchmark");
+        NetworkSnapshot.write(directory.resolve(SocialNetwork.DATA_FILE), graph, 0);
+        network = new SocialNetwork(directory, SocialNetwork.StorageMode.MAPPED,
+                MutationLog.SyncMode.ASYNC, PostTimeline.DEFAULT_CAPACITY);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeNetwork() throws IOException {
+        network.close();
+        SyntheticGraphs.deleteRecursively(directory);
+    }
+
+    // Per-thread user picks, plus two users of its own whose friendship is toggled
+    @State(Scope.Thread)
+    public static class Picks {
+        private final SplittableRandom random = new SplittableRandom(7);
+        private int users;
+        String first;
+        String second;
+
+        @Setup(Level.Trial)
+        public void createUsers(SocialNetworkBenchmark benchmark) {
+            users = benchmark.users;
+            first = "benchmark-" + Thread.currentThread().getId() + "-a";
+            second = "benchmark-" + Thread.currentThread().getId() + "-b";
+            benchmark.network.addUser(first, "Benchmark A");
+            benchmark.network.addUser(second, "Benchmark B");
+        }
+
+        String user() {
+            return SyntheticGraphs.username(random.nextInt(users));
+        }
+    }
+
+    @Benchmark
+    public List<FriendSuggestion> suggestFriends(Picks picks) {
+        return network.suggestFriends(picks.user());
+    }
+
+    @Benchmark
+    public Set<UserDirectory> getMutualFriends(Picks picks) {
+        return network.getMutualFriends(picks.user(), picks.user());
+    }
+
+    @Benchmark
+    public List<UserDirectory> shortestPath(Picks picks) {
+        return network.shortestPath(picks.user(), picks.user());
+    }
+
+    @Benchmark
+    public BfsResult breadthFirstSearch(Picks picks) {
+        return network.breadthFirstSearch(picks.user(), BreadthFirstSearch.UNLIMITED);
+    }
+
+    @Benchmark
+    public boolean isReachable(Picks picks) {
+        return network.isReachable(picks.user(), picks.user());
+    }
+
+    @Benchmark
+    public FeedPage getHomeFeed(Picks picks) {
+        return network.getHomeFeed(picks.user());
+    }
+
+    @Benchmark
+    public List<Post> searchPosts() {
+        return network.searchPosts("road \"near kyoto\"");
+    }
+
+    @Benchmark
+    public List<UserDirectory> completeUsers(Picks picks) {
+        return network.completeUsers(picks.user().substring(0, 10));
+    }
+
+    @Benchmark
+    public UserPage listUsers(Picks picks) {
+        return network.listUsers(picks.user(), UsernameOrder.DEFAULT_PAGE_SIZE);
+    }
+
+    // Goes through the mutation log, so it includes the amortized compaction
+    @Benchmark
+    public void addUserPost(Picks picks) {
+        network.addUserPost(picks.user(), "Benchmark day on the road near Cusco");
+    }
+
+    @Benchmark
+    public void addAndRemoveFriend(Picks picks) {
+        network.addFriend(picks.first, picks.second);
+        network.removeFriend(picks.first, picks.second);
+    }
+}
@@ -0,0 +1,276 @@
+package socialMediaPlatform;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Deterministic synthetic networks for benchmarks
+final class SyntheticGraphs {
+
+    private SyntheticGraphs() {
+    }
+
+    // Uniform random graph with the given average degree, plus a few posts per user
+    static FriendGraph uniform(int userCount, int averageDegree, long seed) {
+        Random random = new Random(seed);
+        UserDirectory[] users = new UserDirectory[userCount];
+        FriendGraph graph = new FriendGraph(userCount);
+        for (int i = 0; i < userCount; i++) {
+            users[i] = new UserDirectory(username(i), "Traveler " + i);
+            graph.register(users[i]);
+        }
+
+        long edges = (long) userCount * averageDegree / 2;
+        for (long e = 0; e < edges; e++) {
+            int a = random.nextInt(userCount);
+            int b = random.nextInt(userCount);
+            if (a != b && !users[a].getFriends().contains(users[b])) {
+                users[a].addFriend(users[b]);
+                users[a].incrementFollowerCount();
+                users[b].incrementFollowingCount();
+            }
+        }
+
+        for (int i = 0; i < userCount; i++) {
+            int posts = random.nextInt(4);
+            for (int p = 0; p < posts; p++) {
+                users[i].addPost("Day " + random.nextInt(365) + " on the road near " + PLACES[random.nextInt(PLACES.length)]);
+            }
+        }
+        return graph;
+    }
+
+    // Chung-Lu graph whose expected degrees follow a power law with the given
+    // exponent (2 < exponent < 3 for social networks): a few hubs with
+    // thousands of friends and a long tail of users with a handful
+    static FriendGraph powerLaw(int userCount, int averageDegree, double exponent, long seed) {
+        Random random = new Random(seed);
+        FriendGraph graph = new FriendGraph(userCount);
+        for (int i = 0; i < userCount; i++) {
+            graph.register(new UserDirectory(username(i), "Traveler " + i));
+        }
+
+        // Cumulative weights, so an endpoint is picked with probability proportional to its weight
+        double[] cumulative = new double[userCount];
+        double total = 0;
+        for (int i = 0; i < userCount; i++) {
+            total += Math.pow(i + 1, -1 / (exponent - 1));
+            cumulative[i] = total;
+        }
+
+        long edges = (long) userCount * averageDegree / 2;
+        for (long e = 0; e < edges; e++) {
+            int a = pick(cumulative, random.nextDouble() * total);
+            int b = pick(cumulative, random.nextDouble() * total);
+            if (a != b && graph.link(a, b)) {
+                graph.user(a).incrementFollowerCount();
+                graph.user(b).incrementFollowingCount();
+            }
+        }
+        return graph;
+    }
+
+    // Random-graph models for the benchmark suite. All of them are
+    // deterministic for a given seed and build the friend rows directly, so
+    // 10M-user networks take seconds rather than one link() per edge.
+    enum Model {
+        ERDOS_RENYI,
+        BARABASI_ALBERT,
+        WATTS_STROGATZ;
+
+        FriendGraph generate(int userCount, int averageDegree, long seed) {
+            switch (this) {
+                case ERDOS_RENYI:
+                    return erdosRenyi(userCount, averageDegree, seed);
+                case BARABASI_ALBERT:
+                    return barabasiAlbert(userCount, averageDegree, seed);
+                default:
+                    return wattsStrogatz(userCount, averageDegree, SMALL_WORLD_REWIRING, seed);
+            }
+        }
+    }
+
+    // Share of ring edges a small-world graph rewires to a random user
+    static final double SMALL_WORLD_REWIRING = 0.1;
+
+    // G(n, m): userCount * averageDegree / 2 edges between uniformly chosen users
+    static FriendGraph erdosRenyi(int userCount, int averageDegree, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        EdgeList edges = new EdgeList((long) userCount * averageDegree / 2);
+        for (long e = edges.capacity(); e > 0; e--) {
+            edges.add(random.nextInt(userCount), random.nextInt(userCount));
+        }
+        return edges.toGraph(userCount);
+    }
+
+    // Preferential attachment: each new user befriends averageDegree / 2
+    // existing users chosen in proportion to their degree, which gives a
+    // power-law degree distribution with exponent 3
+    static FriendGraph barabasiAlbert(int userCount, int averageDegree, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int perUser = Math.max(1, averageDegree / 2);
+        int core = Math.min(userCount, perUser + 1);
+        EdgeList edges = new EdgeList((long) core * core / 2 + (long) (userCount - core) * perUser);
+        // Every edge end, so a uniform pick from it is a degree-weighted pick of a user
+        int[] ends = new int[(int) Math.min(Integer.MAX_VALUE - 8, edges.capacity() * 2)];
+        int endCount = 0;
+        for (int a = 0; a < core; a++) {
+            for (int b = a + 1; b < core; b++) {
+                edges.add(a, b);
+                ends[endCount++] = a;
+                ends[endCount++] = b;
+            }
+        }
+        int[] chosen = new int[perUser];
+        for (int user = core; user < userCount; user++) {
+            int count = 0;
+            while (count < perUser) {
+                int target = endCount == 0 ? random.nextInt(user) : ends[random.nextInt(endCount)];
+                boolean repeated = false;
+                for (int i = 0; i < count && !repeated; i++) {
+                    repeated = chosen[i] == target;
+                }
+                if (!repeated) {
+                    chosen[count++] = target;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                edges.add(user, chosen[i]);
+                if (endCount + 2 <= ends.length) {
+                    ends[endCount++] = user;
+                    ends[endCount++] = chosen[i];
+                }
+            }
+        }
+        return edges.toGraph(userCount);
+    }
+
+    // Watts-Strogatz: a ring where everyone knows their averageDegree nearest
+    // neighbours, with each edge re-pointed at a random user with the given
+    // probability. Short paths, but friends of friends are mostly friends.
+    static FriendGraph wattsStrogatz(int userCount, int averageDegree, double rewiring, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int reach = Math.max(1, averageDegree / 2);
+        EdgeList edges = new EdgeList((long) userCount * reach);
+        for (int user = 0; user < userCount; user++) {
+            for (int step = 1; step <= reach; step++) {
+                int friend = (user + step) % userCount;
+                if (random.nextDouble() < rewiring) {
+                    friend = random.nextInt(userCount);
+                }
+                edges.add(user, friend);
+            }
+        }
+        return edges.toGraph(userCount);
+    }
+
+    // Gives every user up to maxPosts posts with increasing timestamps
+    static void addPosts(FriendGraph graph, int maxPosts, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long timestamp = 0;
+        for (int id = 0; id < graph.size(); id++) {
+            int posts = random.nextInt(maxPosts + 1);
+            for (int p = 0; p < posts; p++) {
+                graph.user(id).addPost("Day " + random.nextInt(365) + " on the road near "
+                        + PLACES[random.nextInt(PLACES.length)], ++timestamp, PostTimeline.DEFAULT_CAPACITY);
+            }
+        }
+    }
+
+    // Undirected edges, turned into sorted friend rows in one pass.
+    // Self-loops and repeated pairs are dropped, so a model may end up with
+    // slightly fewer edges than it drew.
+    private static final class EdgeList {
+        private final int[] from;
+        private final int[] to;
+        private int size;
+
+        EdgeList(long capacity) {
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Too many edges for one benchmark graph: " + capacity);
+            }
+            from = new int[(int) capacity];
+            to = new int[(int) capacity];
+        }
+
+        long capacity() {
+            return from.length;
+        }
+
+        void add(int a, int b) {
+            from[size] = a;
+            to[size] = b;
+            size++;
+        }
+
+        FriendGraph toGraph(int userCount) {
+            int[] offsets = new int[userCount + 1];
+            for (int e = 0; e < size; e++) {
+                if (from[e] != to[e]) {
+                    offsets[from[e] + 1]++;
+                    offsets[to[e] + 1]++;
+                }
+            }
+            for (int id = 0; id < userCount; id++) {
+                offsets[id + 1] += offsets[id];
+            }
+            int[] ends = new int[offsets[userCount]];
+            int[] fill = Arrays.copyOf(offsets, userCount);
+            for (int e = 0; e < size; e++) {
+                if (from[e] != to[e]) {
+                    ends[fill[from[e]]++] = to[e];
+                    ends[fill[to[e]]++] = from[e];
+                }
+            }
+
+            FriendGraph graph = new FriendGraph(userCount);
+            long edgeEntries = 0;
+            for (int id = 0; id < userCount; id++) {
+                Arrays.sort(ends, offsets[id], offsets[id + 1]);
+                int length = 0;
+                for (int i = offsets[id]; i < offsets[id + 1]; i++) {
+                    if (length == 0 || ends[offsets[id] + length - 1] != ends[i]) {
+                        ends[offsets[id] + length++] = ends[i];
+                    }
+                }
+                edgeEntries += length;
+                graph.restore(id, new UserDirectory(username(id), "Traveler " + id),
+                        Arrays.copyOfRange(ends, offsets[id], offsets[id] + length));
+            }
+            graph.addRestoredEdges(edgeEntries / 2);
+            return graph;
+        }
+    }
+
+    private static int pick(double[] cumulative, double target) {
+        int index = Arrays.binarySearch(cumulative, target);
+        return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    static Map<String, UserDirectory> byUsername(FriendGraph graph) {
+        Map<String, UserDirectory> users = new HashMap<>(Math.max(16, (int) (graph.size() / 0.75f) + 1));
+        for (int i = 0; i < graph.size(); i++) {
+            users.put(graph.user(i).getUsername(), graph.user(i));
+        }
+        return users;
+    }
+
+    // Removes a benchmark's temporary data directory
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    static String username(int index) {
+        return "traveler" + index;
+    }
+
+    private static final String[] PLACES = {
+            "Patagonia", "Kyoto", "Reykjavik", "Marrakesh", "Cusco", "Hoi An", "Queenstown", "Tromso"
+    };
+}
@@ -0,0 +1,122 @@
+package socialMediaPlatform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+// Adds and removes friendships from several threads at once, crossing the
+// compaction threshold on the way, and checks that the network ends up
+// symmetric and exactly as the threads left it.
+class ConcurrentFriendshipTest {
+
+    private static final int USERS = 120;
+    private static final int THREADS = 4;
+    private static final int OPERATIONS_PER_THREAD = 3000;
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(SocialNetwork.StorageMode.class)
+    void concurrentAddAndRemoveKeepFriendshipsSymmetric(SocialNetwork.StorageMode mode) throws Exception {
+        SocialNetwork network = new SocialNetwork(directory, mode, MutationLog.SyncMode.ASYNC, PostTimeline.DEFAULT_CAPACITY);
+        try {
+            for (int i = 0; i < USERS; i++) {
+                network.addUser(username(i), "User " + i);
+            }
+
+            // Every thread owns the pairs whose index sum falls in its class, so
+            // rows are shared between threads but no pair is, and each thread
+            // knows exactly which of its friendships must survive
+            List<Set<Long>> expected = new ArrayList<>();
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                Set<Long> friendships = new HashSet<>();
+                expected.add(friendships);
+                workers.add(pool.submit(() -> {
+                    Random random = new Random(thread);
+                    start.await();
+                    for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                        int a = random.nextInt(USERS);
+                        int b = random.nextInt(USERS);
+                        if (a == b || (a + b) % THREADS != thread) {
+                            continue;
+                        }
+                        long pair = pair(a, b);
+                        // Either argument order, so both directions of a row get written
+                        boolean reversed = random.nextBoolean();
+                        String first = username(reversed ? b : a);
+                        String second = username(reversed ? a : b);
+                        if (random.nextInt(3) == 0) {
+                            network.removeFriend(first, second);
+                            friendships.remove(pair);
+                        } else {
+                            network.addFriend(first, second);
+                            friendships.add(pair);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(2, TimeUnit.MINUTES);
+            }
+            pool.shutdown();
+
+            Set<Long> all = new HashSet<>();
+            expected.forEach(all::addAll);
+            assertNetwork(network, all);
+        } finally {
+            network.close();
+        }
+    }
+
+    private static void assertNetwork(SocialNetwork network, Set<Long> expected) {
+        FriendGraph graph = network.getUsers().get(username(0)).graph();
+        long degrees = 0;
+        for (int i = 0; i < USERS; i++) {
+            UserDirectory a = network.getUsers().get(username(i));
+            assertEquals(graph.degree(a.id()), a.getFriends().size(), "degree of " + a.getUsername());
+            degrees += graph.degree(a.id());
+            for (int j = 0; j < USERS; j++) {
+                if (i == j) {
+                    continue;
+                }
+                UserDirectory b = network.getUsers().get(username(j));
+                boolean ab = Arrays.binarySearch(graph.neighbors(a.id()), b.id()) >= 0;
+                boolean ba = Arrays.binarySearch(graph.neighbors(b.id()), a.id()) >= 0;
+                assertEquals(ab, ba, a.getUsername() + " and " + b.getUsername() + " rows disagree");
+                assertEquals(graph.connected(a.id(), b.id()), graph.connected(b.id(), a.id()));
+                assertEquals(expected.contains(pair(i, j)), ab, a.getUsername() + " - " + b.getUsername());
+            }
+        }
+        assertEquals(2L * expected.size(), degrees);
+        assertEquals(expected.size(), graph.edgeCount());
+        // The incrementally kept community index agrees with a fresh traversal
+        for (int i = 0; i < USERS; i += 7) {
+            BfsResult reached = network.breadthFirstSearch(username(i), BreadthFirstSearch.UNLIMITED);
+            assertEquals(reached.reachedCount(), network.getCommunitySize(username(i)), "community of " + username(i));
+            for (int j = 0; j < USERS; j += 11) {
+                assertEquals(network.isReachable(username(i), username(j)), network.isReachable(username(j), username(i)));
+            }
+        }
+        assertEquals(0, graph.pinnedVersions());
+    }
+
+    private static String username(int i) {
+        return "user" + i;
+    }
+
+    private static long pair(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+}
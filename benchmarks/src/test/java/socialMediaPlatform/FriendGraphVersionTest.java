@@ -0,0 +1,175 @@
+package socialMediaPlatform;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+// Pins versions of a FriendGraph, changes the live graph underneath them and
+// checks that each version still reads exactly as it did when pinned, for
+// plain rows and for hub rows on both sides of HUB_DEGREE, and that a retired
+// graph is only released once its last version is closed.
+class FriendGraphVersionTest {
+
+    private static final int USERS = 5000;
+
+    @Test
+    void pinnedVersionIgnoresLaterChanges() {
+        FriendGraph graph = graph(10);
+        graph.link(1, 2);
+        graph.link(1, 3);
+        graph.link(4, 5);
+
+        FriendGraph.Version version = graph.pin();
+        graph.unlink(1, 2);
+        graph.link(1, 6);
+        graph.link(7, 8);
+        graph.register(new UserDirectory("late", "Late"));
+
+        FriendGraph pinned = version.graph();
+        assertArrayEquals(new int[]{2, 3}, pinned.neighbors(1));
+        assertArrayEquals(new int[0], pinned.neighbors(7));
+        assertTrue(pinned.connected(2, 1));
+        assertEquals(3, pinned.edgeCount());
+        assertEquals(10, pinned.size());
+        assertArrayEquals(new int[]{3, 6}, graph.neighbors(1));
+        assertEquals(4, graph.edgeCount());
+        assertEquals(11, graph.size());
+
+        assertEquals(1, graph.pinnedVersions());
+        version.close();
+        version.close();
+        assertEquals(0, graph.pinnedVersions());
+
+        // Once nothing is pinned rows change in place, and a new pin sees them
+        graph.unlink(1, 3);
+        try (FriendGraph.Version next = graph.pin()) {
+            assertArrayEquals(new int[]{6}, next.graph().neighbors(1));
+        }
+    }
+
+    @Test
+    void eachVersionKeepsItsOwnState() {
+        FriendGraph graph = graph(10);
+        List<FriendGraph.Version> versions = new ArrayList<>();
+        for (int friend = 1; friend < 10; friend++) {
+            versions.add(graph.pin());
+            graph.link(0, friend);
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(i, versions.get(i).graph().degree(0));
+        }
+        // Closing out of order leaves the others intact
+        versions.remove(4).close();
+        versions.remove(0).close();
+        assertEquals(8, versions.get(6).graph().degree(0));
+        assertEquals(1, versions.get(0).graph().degree(0));
+        versions.forEach(FriendGraph.Version::close);
+        assertEquals(0, graph.pinnedVersions());
+        assertEquals(9, graph.degree(0));
+    }
+
+    @Test
+    void retiredGraphIsReleasedAfterItsLastVersion() {
+        FriendGraph graph = graph(4);
+        AtomicInteger released = new AtomicInteger();
+        graph.whenUnpinned(released::incrementAndGet);
+        assertEquals(1, released.get());
+
+        FriendGraph.Version first = graph.pin();
+        FriendGraph.Version second = graph.pin();
+        graph.whenUnpinned(released::incrementAndGet);
+        first.close();
+        assertEquals(1, released.get());
+        second.close();
+        assertEquals(2, released.get());
+        second.close();
+        assertEquals(2, released.get());
+    }
+
+    @Test
+    void hubRowsKeepPinnedVersionsAndMatchAPlainModel() {
+        FriendGraph graph = graph(USERS);
+        Random random = new Random(11);
+        TreeSet<Integer> model = new TreeSet<>();
+        // Grow user 0 past HUB_DEGREE in one batch; an edge with user 0 is
+        // just the friend's id
+        long[] links = new long[FriendGraph.HUB_DEGREE + 200];
+        for (int i = 0; i < links.length; i++) {
+            links[i] = i + 1;
+            model.add(i + 1);
+        }
+        graph.changeEdges(links, new long[0]);
+        assertRow(graph, model);
+
+        List<FriendGraph.Version> versions = new ArrayList<>();
+        List<int[]> pinnedRows = new ArrayList<>();
+        for (int round = 0; round < 25; round++) {
+            if (round % 5 == 0) {
+                versions.add(graph.pin());
+                pinnedRows.add(toArray(model));
+            }
+            for (int i = 0; i < 100; i++) {
+                // Mostly removals of existing friends, so the row falls back
+                // below the threshold on the way
+                if (!model.isEmpty() && random.nextInt(3) > 0) {
+                    int existing = model.ceiling(1 + random.nextInt(model.last()));
+                    assertTrue(graph.unlink(0, existing));
+                    model.remove(existing);
+                } else {
+                    int friend = 1 + random.nextInt(USERS - 1);
+                    assertEquals(model.add(friend), graph.link(friend, 0));
+                }
+            }
+            assertRow(graph, model);
+        }
+        assertTrue(model.size() < FriendGraph.HUB_DEGREE / 2);
+
+        for (int i = 0; i < versions.size(); i++) {
+            FriendGraph pinned = versions.get(i).graph();
+            assertArrayEquals(pinnedRows.get(i), pinned.neighbors(0));
+            assertEquals(pinnedRows.get(i).length, pinned.degree(0));
+            versions.get(i).close();
+        }
+        assertEquals(0, graph.pinnedVersions());
+
+        // And back over the threshold in one batch, with removals mixed in
+        long[] unlinks = {model.pollFirst(), model.pollLast()};
+        List<Long> add = new ArrayList<>();
+        for (int friend = 1; friend < USERS && add.size() < FriendGraph.HUB_DEGREE; friend++) {
+            if (!model.contains(friend) && friend != unlinks[0] && friend != unlinks[1]) {
+                add.add((long) friend);
+                model.add(friend);
+            }
+        }
+        graph.changeEdges(add.stream().mapToLong(Long::longValue).toArray(), unlinks);
+        assertRow(graph, model);
+    }
+
+    private static void assertRow(FriendGraph graph, TreeSet<Integer> model) {
+        assertArrayEquals(toArray(model), graph.neighbors(0));
+        assertEquals(model.size(), graph.degree(0));
+        assertEquals(model.size(), graph.edgeCount());
+        for (int friend = 1; friend < USERS; friend += 97) {
+            assertEquals(model.contains(friend), graph.connected(0, friend));
+            assertEquals(model.contains(friend), graph.connected(friend, 0));
+        }
+        assertFalse(graph.connected(0, 0));
+    }
+
+    private static int[] toArray(Set<Integer> friends) {
+        return friends.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static FriendGraph graph(int users) {
+        FriendGraph graph = new FriendGraph(users);
+        for (int id = 0; id < users; id++) {
+            graph.register(new UserDirectory("user" + id, "User " + id));
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,160 @@
+package socialMediaPlatform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Writes records, reopens the log and checks what replays: every field of
+// plain, timed and batched records, records already in the snapshot skipped,
+// a torn tail cut off, and nothing left after a reset.
+class MutationLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsReplayInAppendOrder() throws IOException {
+        Path file = directory.resolve("network.log");
+        try (MutationLog log = open(file, 0, new ArrayList<>())) {
+            log.append(MutationLog.Type.ADD_USER, "ana", "Ana \u00e9\ud83d\ude00");
+            log.append(MutationLog.Type.ADD_USER, "ben", "Ben");
+            log.append(MutationLog.Type.ADD_FRIEND, "ana", "ben");
+            log.append(MutationLog.Type.ADD_TIMED_POST, "ana", "hello", 1234L);
+            log.appendBatch(List.of(
+                    new MutationLog.Entry(MutationLog.Type.REMOVE_FRIEND, 0, "ana", "ben", 0),
+                    new MutationLog.Entry(MutationLog.Type.ADD_TIMED_POST, 0, "ben", "", 99L)));
+            assertEquals(6, log.recordCount());
+        }
+
+        List<MutationLog.Entry> replayed = new ArrayList<>();
+        try (MutationLog log = open(file, 0, replayed)) {
+            assertEquals(5, log.lastSequence());
+            assertEquals(6, log.recordCount());
+        }
+        assertEquals(List.of("ADD_USER ana Ana \u00e9\ud83d\ude00 1 0", "ADD_USER ben Ben 2 0", "ADD_FRIEND ana ben 3 0",
+                "ADD_TIMED_POST ana hello 4 1234", "REMOVE_FRIEND ana ben 5 0", "ADD_TIMED_POST ben  5 99"),
+                describe(replayed));
+    }
+
+    @Test
+    void recordsInTheSnapshotAreSkipped() throws IOException {
+        Path file = directory.resolve("network.log");
+        try (MutationLog log = open(file, 10, new ArrayList<>())) {
+            assertEquals(11, log.append(MutationLog.Type.ADD_USER, "ana", "Ana"));
+            log.append(MutationLog.Type.ADD_USER, "ben", "Ben");
+            log.append(MutationLog.Type.ADD_FRIEND, "ana", "ben");
+        }
+
+        List<MutationLog.Entry> replayed = new ArrayList<>();
+        try (MutationLog log = open(file, 12, replayed)) {
+            assertEquals(1, replayed.size());
+            assertEquals(13, replayed.get(0).sequence);
+            // New records carry on after the newest one in the file
+            assertEquals(14, log.append(MutationLog.Type.REMOVE_FRIEND, "ana", "ben"));
+        }
+    }
+
+    @Test
+    void tornTailIsCutOffAndAppendsCarryOn() throws IOException {
+        Path file = directory.resolve("network.log");
+        try (MutationLog log = open(file, 0, new ArrayList<>())) {
+            log.append(MutationLog.Type.ADD_USER, "ana", "Ana");
+            log.append(MutationLog.Type.ADD_USER, "ben", "Ben");
+        }
+        long intact = Files.size(file);
+        try (MutationLog log = open(file, 0, new ArrayList<>())) {
+            log.append(MutationLog.Type.ADD_FRIEND, "ana", "ben");
+        }
+        // A crash in the middle of the third record
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        List<MutationLog.Entry> replayed = new ArrayList<>();
+        try (MutationLog log = open(file, 0, replayed)) {
+            assertEquals(2, replayed.size());
+            assertEquals(intact, Files.size(file));
+            assertEquals(3, log.append(MutationLog.Type.ADD_FRIEND, "ben", "ana"));
+        }
+
+        replayed.clear();
+        try (MutationLog log = open(file, 0, replayed)) {
+            assertEquals(List.of("ADD_USER ana Ana 1 0", "ADD_USER ben Ben 2 0", "ADD_FRIEND ben ana 3 0"),
+                    describe(replayed));
+        }
+    }
+
+    @Test
+    void damagedRecordEndsTheReplay() throws IOException {
+        Path file = directory.resolve("network.log");
+        try (MutationLog log = open(file, 0, new ArrayList<>())) {
+            log.append(MutationLog.Type.ADD_USER, "ana", "Ana");
+            log.append(MutationLog.Type.ADD_USER, "ben", "Ben");
+        }
+        // Flip a byte in the second record's name
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        List<MutationLog.Entry> replayed = new ArrayList<>();
+        try (MutationLog log = open(file, 0, replayed)) {
+            assertEquals(List.of("ADD_USER ana Ana 1 0"), describe(replayed));
+        }
+    }
+
+    @Test
+    void resetEmptiesTheLogButKeepsTheSequence() throws IOException {
+        Path file = directory.resolve("network.log");
+        try (MutationLog log = open(file, 0, new ArrayList<>())) {
+            log.append(MutationLog.Type.ADD_USER, "ana", "Ana");
+            log.append(MutationLog.Type.ADD_USER, "ben", "Ben");
+            log.reset();
+            assertEquals(0, log.recordCount());
+            assertEquals(0, Files.size(file));
+            assertEquals(3, log.append(MutationLog.Type.ADD_FRIEND, "ana", "ben"));
+        }
+
+        List<MutationLog.Entry> replayed = new ArrayList<>();
+        try (MutationLog log = open(file, 2, replayed)) {
+            assertEquals(List.of("ADD_FRIEND ana ben 3 0"), describe(replayed));
+        }
+    }
+
+    @Test
+    void oversizedRecordIsRejectedWithoutUsingASequence() throws IOException {
+        Path file = directory.resolve("network.log");
+        try (MutationLog log = open(file, 0, new ArrayList<>())) {
+            String huge = "x".repeat(MutationLog.MAX_RECORD_BYTES);
+            assertThrows(IllegalArgumentException.class,
+                    () -> log.append(MutationLog.Type.ADD_TIMED_POST, "ana", huge, 1L));
+            assertEquals(1, log.append(MutationLog.Type.ADD_USER, "ana", "Ana"));
+        }
+        assertTrue(MutationLog.recordBytes(MutationLog.Type.ADD_USER, "a", "\ud83d\ude00")
+                > MutationLog.recordBytes(MutationLog.Type.ADD_USER, "a", "ab"));
+    }
+
+    private static MutationLog open(Path file, long snapshotSequence, List<MutationLog.Entry> replayed)
+            throws IOException {
+        MutationLog log = new MutationLog(file, MutationLog.SyncMode.PER_OPERATION, 1);
+        log.open(snapshotSequence, replayed::add);
+        return log;
+    }
+
+    private static List<String> describe(List<MutationLog.Entry> entries) {
+        List<String> described = new ArrayList<>();
+        for (MutationLog.Entry entry : entries) {
+            described.add(entry.type + " " + entry.first + " " + entry.second + " " + entry.sequence + " "
+                    + entry.timestamp);
+        }
+        return described;
+    }
+}
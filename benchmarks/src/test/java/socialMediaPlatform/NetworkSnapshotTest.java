@@ -0,0 +1,202 @@
+package socialMediaPlatform;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+// Writes a small network to a snapshot and reads it back whole, through the
+// mapped store, from a legacy serialized file, and through a SocialNetwork
+// restart, checking that every user, friendship, post and count survives.
+class NetworkSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readBackMatchesWhatWasWritten() throws IOException {
+        FriendGraph graph = sampleGraph();
+        Path file = directory.resolve("network.dat");
+        int[] snapshotIds = NetworkSnapshot.write(file, graph, 42);
+
+        NetworkSnapshot.Contents contents = NetworkSnapshot.read(file);
+        assertEquals(42, contents.sequence);
+        assertEquals(describe(graph), describe(contents.graph));
+        // Users are numbered by username
+        for (int id = 0; id < graph.size(); id++) {
+            assertEquals(graph.username(id), contents.graph.username(snapshotIds[id]));
+        }
+        for (int id = 1; id < contents.graph.size(); id++) {
+            assertEquals(-1, Integer.signum(contents.graph.username(id - 1).compareTo(contents.graph.username(id))));
+        }
+        assertEquals(graph.size(), contents.users.size());
+    }
+
+    @Test
+    void mappedStoreMatchesWhatWasWritten() throws IOException {
+        FriendGraph graph = sampleGraph();
+        Path file = directory.resolve("network.dat");
+        NetworkSnapshot.write(file, graph, 7);
+
+        MappedNetworkStore store = MappedNetworkStore.open(file);
+        try {
+            assertEquals(7, store.sequence());
+            assertEquals(graph.size(), store.size());
+            assertEquals(describe(graph), describe(store.graph()));
+            assertEquals("Cleo", store.get("cleo").getName());
+            assertEquals(null, store.get("nobody"));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void truncatedSnapshotIsRejected() throws IOException {
+        Path file = directory.resolve("network.dat");
+        NetworkSnapshot.write(file, sampleGraph(), 1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+        assertThrows(IOException.class, () -> NetworkSnapshot.read(file));
+        assertThrows(IOException.class, () -> MappedNetworkStore.open(file));
+    }
+
+    @Test
+    void legacySerializedNetworkConverts() throws IOException {
+        Map<String, UserDirectory> users = new HashMap<>();
+        for (String username : List.of("dan", "ana", "ben")) {
+            users.put(username, new UserDirectory(username, username.toUpperCase()));
+        }
+        // The old format kept friends as plain sets, so write it from a graph
+        FriendGraph graph = new FriendGraph();
+        users.values().forEach(graph::register);
+        users.get("ana").addFriend(users.get("ben"));
+        users.get("dan").addFriend(users.get("ben"));
+        users.get("ana").addPost("first");
+        users.get("ana").incrementFollowerCount();
+        Path legacy = directory.resolve("network.ser");
+        try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(legacy))) {
+            out.writeObject(new HashMap<>(users));
+            out.writeLong(5);
+        }
+
+        Path file = directory.resolve("network.dat");
+        NetworkSnapshot.convertLegacy(legacy, file);
+        NetworkSnapshot.Contents contents = NetworkSnapshot.read(file);
+        assertEquals(5, contents.sequence);
+        assertEquals(List.of("ana ANA followers=1 following=0 friends=[ben] posts=[first@0]",
+                "ben BEN followers=0 following=0 friends=[ana, dan] posts=[]",
+                "dan DAN followers=0 following=0 friends=[ben] posts=[]"), describe(contents.graph));
+    }
+
+    @ParameterizedTest
+    @EnumSource(SocialNetwork.StorageMode.class)
+    void networkSurvivesARestart(SocialNetwork.StorageMode mode) {
+        List<String> before;
+        SocialNetwork network = new SocialNetwork(directory, mode, MutationLog.SyncMode.PER_OPERATION,
+                PostTimeline.DEFAULT_CAPACITY);
+        try {
+            network.addUser("ben", "Ben");
+            network.addUser("ana", "Ana");
+            network.addUser("cleo", "Cleo");
+            network.addFriend("ana", "ben");
+            network.addFriend("cleo", "ben");
+            network.addUserPost("ana", "before the snapshot");
+            network.compact();
+            // These only reach the log
+            network.addUser("abe", "Abe");
+            network.addFriend("abe", "cleo");
+            network.removeFriend("ana", "ben");
+            network.addUserPost("cleo", "after the snapshot");
+            before = describe(network);
+        } finally {
+            network.close();
+        }
+
+        SocialNetwork reopened = new SocialNetwork(directory, mode, MutationLog.SyncMode.PER_OPERATION,
+                PostTimeline.DEFAULT_CAPACITY);
+        try {
+            assertEquals(before, describe(reopened));
+            assertEquals(List.of("abe", "ana", "ben", "cleo"), usernames(reopened.listUsers(null, 10)));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    // Users with posts, a follower count and friendships, registered out of
+    // username order so writing has to renumber them
+    private static FriendGraph sampleGraph() {
+        FriendGraph graph = new FriendGraph();
+        List<UserDirectory> users = new ArrayList<>();
+        for (String username : List.of("dan", "ana", "cleo", "ben", "\u00e9mile", "zoe")) {
+            UserDirectory user = new UserDirectory(username, Character.toUpperCase(username.charAt(0)) + username.substring(1));
+            graph.register(user);
+            users.add(user);
+        }
+        graph.link(0, 1);
+        graph.link(0, 2);
+        graph.link(3, 1);
+        graph.link(4, 0);
+        users.get(1).restorePost("hello", 100);
+        users.get(1).restorePost("hello", 200);
+        users.get(4).restorePost("bonjour \ud83d\ude00", 300);
+        users.get(2).incrementFollowerCount();
+        users.get(2).incrementFollowingCount();
+        users.get(2).incrementFollowingCount();
+        return graph;
+    }
+
+    // One line per user, in username order, naming friends by username
+    private static List<String> describe(FriendGraph graph) {
+        List<String> lines = new ArrayList<>();
+        for (int id = 0; id < graph.size(); id++) {
+            lines.add(describe(graph.user(id)));
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static List<String> describe(SocialNetwork network) {
+        List<String> lines = new ArrayList<>();
+        for (UserDirectory user : network.getUsers().values()) {
+            lines.add(describe(user));
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static String describe(UserDirectory user) {
+        List<String> friends = new ArrayList<>();
+        for (UserDirectory friend : user.getFriends()) {
+            friends.add(friend.getUsername());
+        }
+        Collections.sort(friends);
+        List<String> posts = new ArrayList<>();
+        List<Post> timeline = new ArrayList<>(user.getTimeline());
+        Collections.reverse(timeline);
+        for (Post post : timeline) {
+            // Restored posts keep their time; live ones only need the text
+            posts.add(post.getText() + (post.getTimestamp() < 1000 ? "@" + post.getTimestamp() : ""));
+        }
+        return user.getUsername() + " " + user.getName() + " followers=" + user.getFollowerCount()
+                + " following=" + user.getFollowingCount() + " friends=" + friends + " posts=" + posts;
+    }
+
+    private static List<String> usernames(UserPage page) {
+        List<String> usernames = new ArrayList<>();
+        for (UserDirectory user : page.getUsers()) {
+            usernames.add(user.getUsername());
+        }
+        return usernames;
+    }
+}